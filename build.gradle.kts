@@ -21,6 +21,8 @@ repositories {
 dependencies {
     // Spring Boot
     implementation("org.springframework.boot:spring-boot-starter")
+    implementation("org.springframework.boot:spring-boot-starter-actuator") // SimpleDb 지표(Micrometer), readiness
+    annotationProcessor("org.springframework.boot:spring-boot-configuration-processor") // simple-db.* 설정 자동완성
 
     // Lombok
     compileOnly("org.projectlombok:lombok")
@@ -44,3 +46,12 @@ dependencies {
 tasks.test {
     useJUnitPlatform()
 }
+
+// SimpleDb 부하 테스트 (옵션은 LoadTest 주석 참고)
+// ./gradlew loadTest --args="--rates=500,1000,2000 --threads=virtual"
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "SimpleDb 부하 테스트"
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass = "com.back.loadtest.LoadTest"
+}
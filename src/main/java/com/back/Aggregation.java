@@ -0,0 +1,132 @@
+package com.back;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+selectRows()로 Map을 받아 자바에서 집계하는 대신 ResultSet을 한 행씩 읽으면서 바로 집계한다
+
+사용 예)
+Aggregation aggregation = Aggregation.groupBy("isBlind").measure("id");
+AggregationResult result = sql.append("SELECT isBlind, id FROM article").aggregate(aggregation);
+result.group(false).count(), result.group(false).avg("id") ...
+
+- 행 Map을 만들지 않고 필요한 컬럼만 인덱스로 읽는다
+- measure 컬럼은 타입에 맞게 읽어 count/sum/min/max를 누적한다 (avg = sum / count)
+  정수 컬럼은 getLong으로 읽어 long에 Math.addExact로 더하고 (넘치면 ArithmeticException),
+  DECIMAL은 getBigDecimal로 BigDecimal에 더하며, 나머지는 getDouble로 double에 더한다
+  (큰 정수나 금액을 double로 더하면 2^53 이상에서 자릿수를, 0.1 같은 값에서 정확도를 잃는다)
+ */
+public class Aggregation {
+    private final List<String> groupBy;
+    private final List<String> measures = new ArrayList<>();
+
+    private Aggregation(List<String> groupBy) {
+        this.groupBy = groupBy;
+    }
+
+    public static Aggregation groupBy(String... columns) {
+        return new Aggregation(List.of(columns));
+    }
+
+    // 그룹 없이 전체를 하나로 집계
+    public static Aggregation all() {
+        return new Aggregation(List.of());
+    }
+
+    // count/sum/min/max/avg를 계산할 숫자 컬럼
+    public Aggregation measure(String... columns) {
+        for (String column : columns) {
+            if (!measures.contains(column)) measures.add(column);
+        }
+        return this;
+    }
+
+    AggregationResult newResult() {
+        return new AggregationResult(groupBy, List.copyOf(measures), null);
+    }
+
+    AggregationResult collect(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+
+        // 컬럼 위치와 키 읽는 방식은 행마다가 아니라 한 번만 결정
+        int[] keyColumns = new int[groupBy.size()];
+        boolean[] integralKeys = new boolean[groupBy.size()];
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyColumns[i] = indexOf(meta, groupBy.get(i));
+            integralKeys[i] = isIntegral(meta, keyColumns[i]);
+        }
+        int[] measureColumns = new int[measures.size()];
+        AggregationResult.MeasureType[] measureTypes = new AggregationResult.MeasureType[measures.size()];
+        for (int i = 0; i < measureColumns.length; i++) {
+            measureColumns[i] = indexOf(meta, measures.get(i));
+            measureTypes[i] = measureType(meta, measureColumns[i]);
+        }
+
+        AggregationResult result = new AggregationResult(groupBy, List.copyOf(measures), measureTypes);
+        AggregationResult.Key probe = new AggregationResult.Key(new Object[keyColumns.length]);
+
+        while (rs.next()) {
+            for (int i = 0; i < keyColumns.length; i++) {
+                Object value;
+                if (integralKeys[i]) {
+                    long v = rs.getLong(keyColumns[i]);
+                    value = rs.wasNull() ? null : v;
+                } else {
+                    value = AggregationResult.normalizeKey(rs.getObject(keyColumns[i]));
+                }
+                probe.set(i, value);
+            }
+            probe.rehash();
+
+            AggregationResult.Group group = result.groupFor(probe);
+            group.count++;
+            for (int i = 0; i < measureColumns.length; i++) {
+                switch (measureTypes[i]) {
+                    case LONG -> {
+                        long value = rs.getLong(measureColumns[i]);
+                        if (!rs.wasNull()) group.add(i, value);
+                    }
+                    case DECIMAL -> {
+                        BigDecimal value = rs.getBigDecimal(measureColumns[i]);
+                        if (value != null) group.add(i, value);
+                    }
+                    case DOUBLE -> {
+                        double value = rs.getDouble(measureColumns[i]);
+                        if (!rs.wasNull()) group.add(i, value);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int indexOf(ResultSetMetaData meta, String column) throws SQLException {
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            if (meta.getColumnLabel(i).equalsIgnoreCase(column)) return i;
+        }
+        throw new IllegalArgumentException("SELECT 결과에 없는 컬럼: " + column);
+    }
+
+    // 정수 키는 getLong으로 읽어 Integer/Long/BigInteger가 섞이지 않게 Long으로 통일
+    // (드라이버는 INT UNSIGNED도 BIGINT로 알려 주므로 자릿수로 구분, 20자리인 BIGINT UNSIGNED만 long을 넘을 수 있어
+    //  getObject 후 AggregationResult.normalizeKey)
+    private static boolean isIntegral(ResultSetMetaData meta, int column) throws SQLException {
+        int type = meta.getColumnType(column);
+        if (type == Types.BIGINT) return meta.isSigned(column) || meta.getPrecision(column) < 20;
+        return type == Types.TINYINT || type == Types.SMALLINT || type == Types.INTEGER;
+    }
+
+    private static AggregationResult.MeasureType measureType(ResultSetMetaData meta, int column) throws SQLException {
+        if (isIntegral(meta, column)) return AggregationResult.MeasureType.LONG;
+        int type = meta.getColumnType(column);
+        if (type == Types.DECIMAL || type == Types.NUMERIC || type == Types.BIGINT)
+            return AggregationResult.MeasureType.DECIMAL;
+        return AggregationResult.MeasureType.DOUBLE;
+    }
+}
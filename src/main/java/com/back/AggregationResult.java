@@ -0,0 +1,273 @@
+package com.back;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/*
+Aggregation으로 집계한 그룹별 결과
+
+그룹 하나당 Group 객체 하나만 만들고, 집계 값은 measure 컬럼 타입(MeasureType)에 맞는 배열에 누적한다
+파티션별 결과는 merge()로 합칠 수 있다
+ */
+public class AggregationResult {
+    private final List<String> groupBy;
+    private final List<String> measures;
+    private final Map<Key, Group> groups = new LinkedHashMap<>();
+    private MeasureType[] measureTypes; // 아직 집계한 적 없는 빈 결과(병합용)면 null
+
+    // measure 컬럼의 합을 누적하는 방식
+    enum MeasureType {
+        LONG, // 정수 컬럼: long, Math.addExact
+        DECIMAL, // DECIMAL / BIGINT UNSIGNED: BigDecimal
+        DOUBLE
+    }
+
+    AggregationResult(List<String> groupBy, List<String> measures, MeasureType[] measureTypes) {
+        this.groupBy = groupBy;
+        this.measures = measures;
+        this.measureTypes = measureTypes;
+    }
+
+    public List<String> groupBy() {
+        return groupBy;
+    }
+
+    public int size() {
+        return groups.size();
+    }
+
+    public List<Group> groups() {
+        return new ArrayList<>(groups.values());
+    }
+
+    // 그룹 키 값으로 조회, 없으면 null (정수 키는 Integer로 넘겨도 된다)
+    public Group group(Object... keys) {
+        Object[] values = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) values[i] = normalizeKey(keys[i]);
+        return groups.get(new Key(values));
+    }
+
+    // 정수 키는 Integer/Short/BigInteger 등이 섞여도 같은 그룹이 되도록 Long으로 통일
+    static Object normalizeKey(Object key) {
+        if (key instanceof Integer || key instanceof Short || key instanceof Byte) return ((Number) key).longValue();
+        if (key instanceof BigInteger big && big.bitLength() < Long.SIZE) return big.longValue();
+        return key;
+    }
+
+    // score가 큰 순서로 상위 n개 (힙 크기를 n으로 유지하므로 전체 정렬하지 않는다)
+    public List<Group> top(int n, ToDoubleFunction<Group> score) {
+        if (n <= 0) return List.of();
+        PriorityQueue<Group> heap = new PriorityQueue<>(n, Comparator.comparingDouble(score));
+        for (Group group : groups.values()) {
+            if (heap.size() < n) {
+                heap.add(group);
+            } else if (score.applyAsDouble(group) > score.applyAsDouble(heap.peek())) {
+                heap.poll();
+                heap.add(group);
+            }
+        }
+        List<Group> result = new ArrayList<>(heap);
+        result.sort(Comparator.comparingDouble(score).reversed());
+        return result;
+    }
+
+    // 다른 파티션의 결과를 이 결과에 합친다
+    public AggregationResult merge(AggregationResult other) {
+        if (!groupBy.equals(other.groupBy) || !measures.equals(other.measures))
+            throw new IllegalArgumentException("같은 Aggregation으로 만든 결과만 합칠 수 있습니다");
+        if (measureTypes == null) measureTypes = other.measureTypes;
+        else if (other.measureTypes != null && !Arrays.equals(measureTypes, other.measureTypes))
+            throw new IllegalArgumentException("measure 컬럼 타입이 다른 결과는 합칠 수 없습니다");
+
+        for (Map.Entry<Key, Group> entry : other.groups.entrySet()) {
+            Group group = groups.get(entry.getKey());
+            if (group == null) {
+                group = new Group(entry.getKey());
+                groups.put(entry.getKey(), group);
+            }
+            group.merge(entry.getValue());
+        }
+        return this;
+    }
+
+    // 집계 중 사용: probe 키로 찾고 없을 때만 키를 복사해서 그룹을 만든다
+    Group groupFor(Key probe) {
+        Group group = groups.get(probe);
+        if (group == null) {
+            Key key = probe.copy();
+            group = new Group(key);
+            groups.put(key, group);
+        }
+        return group;
+    }
+
+    private int measureIndex(String column) {
+        for (int i = 0; i < measures.size(); i++) {
+            if (measures.get(i).equalsIgnoreCase(column)) return i;
+        }
+        throw new IllegalArgumentException("집계하지 않은 컬럼: " + column);
+    }
+
+    private MeasureType measureType(int measure) {
+        return measureTypes == null ? MeasureType.DOUBLE : measureTypes[measure];
+    }
+
+    /*
+    그룹 키
+    집계 중에는 값 배열을 재사용하는 probe 키로 조회하므로 행마다 키 객체를 만들지 않는다
+     */
+    static final class Key {
+        private final Object[] values;
+        private int hash;
+
+        Key(Object[] values) {
+            this.values = values;
+            rehash();
+        }
+
+        void set(int index, Object value) {
+            values[index] = value;
+        }
+
+        void rehash() {
+            hash = Arrays.hashCode(values);
+        }
+
+        Key copy() {
+            return new Key(values.clone());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && hash == other.hash && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public class Group {
+        private final Key key;
+        long count;
+        final long[] counts = new long[measures.size()]; // NULL이 아닌 값의 수
+        final double[] sums = new double[measures.size()]; // MeasureType.DOUBLE
+        final long[] longSums = new long[measures.size()]; // MeasureType.LONG
+        final BigDecimal[] decimalSums = new BigDecimal[measures.size()]; // MeasureType.DECIMAL
+        final double[] mins = new double[measures.size()];
+        final double[] maxes = new double[measures.size()];
+
+        private Group(Key key) {
+            this.key = key;
+            Arrays.fill(mins, Double.POSITIVE_INFINITY);
+            Arrays.fill(maxes, Double.NEGATIVE_INFINITY);
+            Arrays.fill(decimalSums, BigDecimal.ZERO);
+        }
+
+        void add(int measure, double value) {
+            sums[measure] += value;
+            addMinMax(measure, value);
+        }
+
+        void add(int measure, long value) {
+            longSums[measure] = Math.addExact(longSums[measure], value);
+            addMinMax(measure, value);
+        }
+
+        void add(int measure, BigDecimal value) {
+            decimalSums[measure] = decimalSums[measure].add(value);
+            addMinMax(measure, value.doubleValue());
+        }
+
+        private void addMinMax(int measure, double value) {
+            counts[measure]++;
+            if (value < mins[measure]) mins[measure] = value;
+            if (value > maxes[measure]) maxes[measure] = value;
+        }
+
+        private void merge(Group other) {
+            count += other.count;
+            for (int i = 0; i < sums.length; i++) {
+                counts[i] += other.counts[i];
+                sums[i] += other.sums[i];
+                longSums[i] = Math.addExact(longSums[i], other.longSums[i]);
+                decimalSums[i] = decimalSums[i].add(other.decimalSums[i]);
+                mins[i] = Math.min(mins[i], other.mins[i]);
+                maxes[i] = Math.max(maxes[i], other.maxes[i]);
+            }
+        }
+
+        public List<Object> keys() {
+            return Collections.unmodifiableList(Arrays.asList(key.values));
+        }
+
+        public Object key(String column) {
+            for (int i = 0; i < groupBy.size(); i++) {
+                if (groupBy.get(i).equalsIgnoreCase(column)) return key.values[i];
+            }
+            throw new IllegalArgumentException("그룹 컬럼이 아닙니다: " + column);
+        }
+
+        // 그룹의 행 수 (COUNT(*))
+        public long count() {
+            return count;
+        }
+
+        // NULL이 아닌 값의 수 (COUNT(column))
+        public long count(String column) {
+            return counts[measureIndex(column)];
+        }
+
+        public double sum(String column) {
+            int i = measureIndex(column);
+            return switch (measureType(i)) {
+                case LONG -> longSums[i];
+                case DECIMAL -> decimalSums[i].doubleValue();
+                case DOUBLE -> sums[i];
+            };
+        }
+
+        // 정수 컬럼의 정확한 합
+        public long sumLong(String column) {
+            int i = measureIndex(column);
+            if (measureType(i) != MeasureType.LONG)
+                throw new IllegalStateException("정수 컬럼이 아닙니다: " + column);
+            return longSums[i];
+        }
+
+        // 정수/DECIMAL 컬럼은 정확한 합, 실수 컬럼은 double 합을 BigDecimal로 바꾼 값
+        public BigDecimal sumDecimal(String column) {
+            int i = measureIndex(column);
+            return switch (measureType(i)) {
+                case LONG -> BigDecimal.valueOf(longSums[i]);
+                case DECIMAL -> decimalSums[i];
+                case DOUBLE -> BigDecimal.valueOf(sums[i]);
+            };
+        }
+
+        // 값이 하나도 없으면 NaN
+        public double min(String column) {
+            int i = measureIndex(column);
+            return counts[i] == 0 ? Double.NaN : mins[i];
+        }
+
+        public double max(String column) {
+            int i = measureIndex(column);
+            return counts[i] == 0 ? Double.NaN : maxes[i];
+        }
+
+        public double avg(String column) {
+            int i = measureIndex(column);
+            if (counts[i] == 0) return Double.NaN;
+            return switch (measureType(i)) {
+                case LONG -> (double) longSums[i] / counts[i];
+                case DECIMAL -> decimalSums[i].divide(BigDecimal.valueOf(counts[i]), MathContext.DECIMAL64).doubleValue();
+                case DOUBLE -> sums[i] / counts[i];
+            };
+        }
+    }
+}
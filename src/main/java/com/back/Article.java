@@ -1,5 +1,6 @@
 package com.back;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
@@ -18,4 +19,21 @@ public class Article {
     private LocalDateTime ModifiedDate;
     private boolean isBlind;
 
+    // body를 나중에 읽도록 조회한 경우에만 존재 (Sql.lazy("body"))
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private ArticleBodyLoader bodyLoader;
+
+    public String getBody() {
+        ArticleBodyLoader loader = bodyLoader;
+        if (Body == null && loader != null) {
+            loader.load(); // 같이 조회된 Article들의 body를 한 번에 채운다
+        }
+        return Body;
+    }
+
+    void setBodyLoader(ArticleBodyLoader bodyLoader) {
+        this.bodyLoader = bodyLoader;
+    }
+
 }
@@ -0,0 +1,55 @@
+package com.back;
+
+import java.util.*;
+
+/*
+body 없이 조회한 Article들의 body를 처음 접근할 때 한 번에 채운다
+
+목록 화면처럼 id/title/날짜만 필요한 경우 TEXT 컬럼을 전송/할당하지 않고,
+그중 하나라도 getBody()를 호출하면 같이 조회된 Article 전부의 body를
+SELECT id, body FROM ... WHERE id IN (...) 로 묶어서 가져온다 (N+1 방지)
+ */
+class ArticleBodyLoader {
+    private static final int BATCH_SIZE = 500; // IN 절 하나에 넣을 id 수
+
+    private final SimpleDb simpleDb;
+    private final String table;
+    private List<Article> pending = new ArrayList<>();
+
+    ArticleBodyLoader(SimpleDb simpleDb, String table) {
+        this.simpleDb = simpleDb;
+        this.table = table;
+    }
+
+    void add(Article article) {
+        pending.add(article);
+        article.setBodyLoader(this);
+    }
+
+    synchronized void load() {
+        if (pending == null) return; // 이미 다른 Article에서 불러옴
+
+        Map<Long, Article> byId = new HashMap<>();
+        for (Article article : pending) {
+            if (article.getId() != null) byId.put(article.getId(), article);
+        }
+
+        List<Long> ids = new ArrayList<>(byId.keySet());
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            Object[] batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size())).toArray();
+            List<Map<String, Object>> rows = simpleDb.genSql()
+                    .append("SELECT id, `body` FROM `" + table + "`")
+                    .appendIn("WHERE id IN (?)", batch)
+                    .selectRows();
+
+            for (Map<String, Object> row : rows) {
+                Article article = byId.get(((Number) row.get("id")).longValue());
+                if (article != null) article.setBody((String) row.get("body"));
+            }
+        }
+
+        // 삭제되어 못 찾은 Article도 다시 조회하지 않도록 로더를 떼어낸다
+        for (Article article : pending) article.setBodyLoader(null);
+        pending = null;
+    }
+}
@@ -0,0 +1,20 @@
+package com.back;
+
+import java.time.Duration;
+
+/*
+bulkLoad() 결과
+
+method: 실제로 사용한 적재 방식 (LOCAL INFILE이 막혀 있으면 BATCH_INSERT)
+ */
+public record BulkLoadResult(String table, long rows, Duration elapsed, Method method) {
+    public enum Method {
+        LOAD_DATA_LOCAL_INFILE, BATCH_INSERT
+    }
+
+    // 초당 적재 행 수
+    public double rowsPerSecond() {
+        long nanos = Math.max(elapsed.toNanos(), 1);
+        return rows * 1_000_000_000.0 / nanos;
+    }
+}
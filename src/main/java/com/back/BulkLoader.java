@@ -0,0 +1,472 @@
+package com.back;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/*
+LOAD DATA LOCAL INFILE로 대량의 행을 한 번에 적재한다
+
+- 파일을 만들지 않고 행을 TSV로 인코딩하는 InputStream을 드라이버에 넘겨, 서버가 읽어가는 만큼만 인코딩한다
+- 형식: 필드 구분 \t, 행 구분 \n, NULL은 \N, 값 안의 \ \t \n \r NUL 은 \ 로 이스케이프, 문자셋 utf8mb4
+- BIT 컬럼은 문자 '1'이 아니라 숫자로 들어가도록 사용자 변수로 받아 CAST 한다
+- 서버/드라이버에서 LOCAL INFILE이 막혀 있으면 여러 행 INSERT 배치로 대신 적재한다
+- LOCAL은 IGNORE처럼 동작해 중복 키 / 잘못된 값이 오류가 아니라 경고가 되고 그 행을 건너뛰거나 바꿔 넣는다
+  -> 보낸 행 수와 적재된 행 수가 다르거나 경고가 있으면 전부 되돌리고 예외를 던진다
+     (배치 INSERT도 경고가 있으면 같은 예외로 되돌리므로 두 방식 모두 전부 들어가거나 전부 안 들어간다)
+- 행을 인코딩하다 실패하면(값 수가 다른 행, Iterator의 예외) 예외를 드라이버로 던지지 않고 거기서 파일을 끝낸 뒤,
+  적재가 끝나면 전부 되돌리고 그 예외를 던진다 (드라이버의 read() 밖으로 예외가 나가면 파일 전송이 끊겨 프로토콜이 어긋난다)
+  그래도 전송 도중 예외가 빠져나오면 그 커넥션은 롤백도 하지 않고 abort로 버린다
+
+SimpleDb.run()을 거치지 않으므로 변경 스트림(changes())에는 발행되지 않는다
+ */
+class BulkLoader {
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z0-9_$]+");
+    private static final DateTimeFormatter DATETIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+    private static final int MAX_BATCH_ROWS = 1000;
+    private static final int MAX_PLACEHOLDERS = 65_535; // MySQL prepared statement 파라미터 한도
+
+    // ER_CLIENT_LOCAL_FILES_DISABLED, ER_NOT_ALLOWED_COMMAND
+    private static final Set<Integer> LOCAL_INFILE_DISABLED = Set.of(3948, 1148);
+
+    private final SimpleDb simpleDb;
+    private volatile boolean localInfileDisabled = false; // 한 번 거부되면 다음부터는 바로 배치 INSERT
+
+    BulkLoader(SimpleDb simpleDb) {
+        this.simpleDb = simpleDb;
+    }
+
+    BulkLoadResult load(String table, List<String> columns, Iterator<Object[]> rows) {
+        RowEncodingInputStream data = new RowEncodingInputStream(rows, columns.size());
+        return load(table, columns, data, data::rowsEncoded, data::failure, () -> {
+            // 이미 서버로 보낸 행이 있으면 이어서 INSERT 할 수 없다
+            if (data.rowsEncoded() > 0) throw new IllegalStateException("LOAD DATA 도중 실패하여 다른 방식으로 적재할 수 없습니다");
+            return rows;
+        });
+    }
+
+    // 위와 같은 형식(TSV, \N = NULL)으로 저장된 파일
+    BulkLoadResult load(String table, List<String> columns, Path file) {
+        try {
+            LineCountingInputStream data = new LineCountingInputStream(Files.newInputStream(file));
+            return load(table, columns, data, data::lines, () -> null, () -> tsvRows(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // rowsSent: LOAD DATA가 끝난 뒤 서버로 보낸 행 수, encodeFailure: 행을 만들다 실패해서 파일을 일찍 끝냈으면 그 예외
+    private BulkLoadResult load(String table, List<String> columns, InputStream data, LongSupplier rowsSent,
+                                Supplier<RuntimeException> encodeFailure, Supplier<Iterator<Object[]>> fallbackRows) {
+        validate(table, columns);
+        long start = System.nanoTime();
+
+        Properties properties = new Properties();
+        properties.setProperty("allowLoadLocalInfile", "true"); // 이 적재용 커넥션에서만 허용
+
+        try (Connection conn = simpleDb.openConnection(properties); InputStream in = data) {
+            Set<String> bitColumns = bitColumns(conn, table, columns);
+
+            if (!localInfileDisabled) {
+                try {
+                    long rows = loadData(conn, table, columns, bitColumns, in, rowsSent, encodeFailure);
+                    return new BulkLoadResult(table, rows, Duration.ofNanos(System.nanoTime() - start),
+                            BulkLoadResult.Method.LOAD_DATA_LOCAL_INFILE);
+                } catch (SQLException e) {
+                    if (!isLocalInfileDisabled(e)) throw e;
+                    localInfileDisabled = true;
+                }
+            }
+
+            long rows = batchInsert(conn, table, columns, bitColumns, fallbackRows.get());
+            return new BulkLoadResult(table, rows, Duration.ofNanos(System.nanoTime() - start),
+                    BulkLoadResult.Method.BATCH_INSERT);
+        } catch (SQLException e) {
+            throw new RuntimeException("대량 적재 오류: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void validate(String table, List<String> columns) {
+        if (columns.isEmpty()) throw new IllegalArgumentException("컬럼이 없습니다");
+        // 테이블/컬럼 이름은 SQL에 그대로 들어가므로 식별자 문자만 허용
+        if (!IDENTIFIER.matcher(table).matches()) throw new IllegalArgumentException("잘못된 테이블 이름: " + table);
+        for (String column : columns) {
+            if (!IDENTIFIER.matcher(column).matches()) throw new IllegalArgumentException("잘못된 컬럼 이름: " + column);
+        }
+    }
+
+    private static boolean isLocalInfileDisabled(SQLException e) {
+        if (LOCAL_INFILE_DISABLED.contains(e.getErrorCode())) return true;
+        String message = String.valueOf(e.getMessage()).toLowerCase();
+        return message.contains("local") && message.contains("disabled");
+    }
+
+    private static Set<String> bitColumns(Connection conn, String table, List<String> columns) throws SQLException {
+        String sql = "SELECT " + quote(columns) + " FROM `" + table + "` LIMIT 0";
+        Set<String> bits = new HashSet<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            ResultSetMetaData meta = rs.getMetaData();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                if (meta.getColumnType(i) == Types.BIT) bits.add(columns.get(i - 1));
+            }
+        }
+        return bits;
+    }
+
+    private static String quote(List<String> columns) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (String column : columns) joiner.add("`" + column + "`");
+        return joiner.toString();
+    }
+
+    // ====LOAD DATA LOCAL INFILE====
+
+    private static long loadData(Connection conn, String table, List<String> columns, Set<String> bitColumns,
+                                 InputStream in, LongSupplier rowsSent,
+                                 Supplier<RuntimeException> encodeFailure) throws SQLException {
+        StringJoiner targets = new StringJoiner(", ", "(", ")");
+        StringJoiner sets = new StringJoiner(", ");
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i);
+            if (bitColumns.contains(column)) {
+                targets.add("@v" + i);
+                sets.add("`" + column + "` = CAST(@v" + i + " AS UNSIGNED)");
+            } else {
+                targets.add("`" + column + "`");
+            }
+        }
+
+        // 파일 이름은 의미 없다 (드라이버가 setLocalInfileInputStream의 스트림을 대신 보낸다)
+        String sql = "LOAD DATA LOCAL INFILE 'simpledb-bulk-load' INTO TABLE `" + table + "`"
+                + " CHARACTER SET utf8mb4"
+                + " FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'"
+                + " LINES TERMINATED BY '\\n' "
+                + targets
+                + (sets.length() > 0 ? " SET " + sets : "");
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false); // 건너뛴 행이 있으면 전부 되돌릴 수 있도록 하나의 트랜잭션으로
+        try (Statement stmt = conn.createStatement()) {
+            stmt.unwrap(JdbcStatement.class).setLocalInfileInputStream(in);
+            long rows;
+            try {
+                rows = stmt.executeLargeUpdate(sql);
+            } catch (RuntimeException e) {
+                // 파일을 보내던 중 빠져나온 예외: 서버가 아직 파일을 기다리는지 알 수 없으므로 이 커넥션으로는 더 보내지 않는다
+                conn.abort(Runnable::run);
+                throw e;
+            }
+
+            long sent = rowsSent.getAsLong();
+            SQLWarning warnings = stmt.getWarnings();
+            if (rows != sent || warnings != null) {
+                throw new SQLException("LOAD DATA가 " + sent + "행 중 " + rows + "행을 적재했습니다" + describe(warnings), warnings);
+            }
+            // 행 수는 맞아도 인코딩에 실패해서 파일을 일찍 끝냈다면 일부만 들어간 것이다
+            RuntimeException failure = encodeFailure.get();
+            if (failure != null) throw failure;
+
+            conn.commit();
+            return rows;
+        } catch (SQLException | RuntimeException e) {
+            if (!conn.isClosed()) conn.rollback();
+            throw e;
+        } finally {
+            if (!conn.isClosed()) conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // 경고 메시지 앞의 몇 개 (예: Duplicate entry '1' for key 'article.PRIMARY')
+    private static String describe(SQLWarning warnings) {
+        if (warnings == null) return "";
+        StringJoiner joiner = new StringJoiner(", ", " (", ")");
+        int shown = 0;
+        for (SQLWarning w = warnings; w != null; w = w.getNextWarning()) {
+            if (shown++ == 3) {
+                joiner.add("...");
+                break;
+            }
+            joiner.add(w.getMessage());
+        }
+        return joiner.toString();
+    }
+
+    // 파일을 그대로 보낼 때 보낸 행 수를 센다 (마지막 줄에 \n이 없어도 한 행)
+    static class LineCountingInputStream extends FilterInputStream {
+        private long newlines = 0;
+        private int last = '\n';
+
+        LineCountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long lines() {
+            return last == '\n' ? newlines : newlines + 1;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            for (int i = 0; i < n; i++) count(b[off + i] & 0xff);
+            return n;
+        }
+
+        private void count(int b) {
+            if (b == '\n') newlines++;
+            last = b;
+        }
+    }
+
+    /*
+    Iterator의 행을 서버가 읽어가는 만큼만 TSV로 인코딩하는 InputStream
+    결과 전체를 메모리나 임시 파일에 만들지 않는다
+    행을 만들다 실패하면 예외를 read() 밖으로 던지지 않고 그 행을 버린 뒤 스트림을 끝낸다 (failure()로 확인)
+     */
+    static class RowEncodingInputStream extends InputStream {
+        private static final int CHUNK = 64 * 1024;
+
+        private final Iterator<Object[]> rows;
+        private final int columnCount;
+        private byte[] buf = new byte[CHUNK * 2];
+        private int pos = 0;
+        private int limit = 0;
+        private long rowsEncoded = 0;
+        private RuntimeException failure;
+
+        RowEncodingInputStream(Iterator<Object[]> rows, int columnCount) {
+            this.rows = rows;
+            this.columnCount = columnCount;
+        }
+
+        long rowsEncoded() {
+            return rowsEncoded;
+        }
+
+        RuntimeException failure() {
+            return failure;
+        }
+
+        @Override
+        public int read() {
+            if (!fill()) return -1;
+            return buf[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!fill()) return -1;
+            int n = Math.min(len, limit - pos);
+            System.arraycopy(buf, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        // 버퍼가 비었으면 다음 행들을 CHUNK 크기 정도까지 인코딩
+        private boolean fill() {
+            if (pos < limit) return true;
+            pos = 0;
+            limit = 0;
+            while (failure == null && limit < CHUNK) {
+                int rowStart = limit;
+                try {
+                    if (!rows.hasNext()) break;
+                    encodeRow(rows.next());
+                } catch (RuntimeException e) {
+                    failure = e;
+                    limit = rowStart; // 반쯤 인코딩된 행은 보내지 않는다
+                }
+            }
+            return limit > 0;
+        }
+
+        private void encodeRow(Object[] row) {
+            if (row.length != columnCount)
+                throw new IllegalArgumentException("컬럼 수(" + columnCount + ")와 값 수(" + row.length + ")가 다릅니다");
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) put((byte) '\t');
+                encodeValue(row[i]);
+            }
+            put((byte) '\n');
+            rowsEncoded++;
+        }
+
+        private void encodeValue(Object value) {
+            if (value == null) {
+                put((byte) '\\');
+                put((byte) 'N');
+                return;
+            }
+            byte[] bytes = switch (value) {
+                case Boolean b -> b ? new byte[]{'1'} : new byte[]{'0'};
+                case byte[] raw -> raw;
+                case LocalDateTime dateTime -> DATETIME.format(dateTime).getBytes(StandardCharsets.US_ASCII);
+                case LocalDate date -> date.toString().getBytes(StandardCharsets.US_ASCII);
+                case BigDecimal decimal -> decimal.toPlainString().getBytes(StandardCharsets.US_ASCII);
+                default -> value.toString().getBytes(StandardCharsets.UTF_8);
+            };
+            // UTF-8의 멀티바이트 문자에는 아래 ASCII 바이트가 나오지 않으므로 바이트 단위로 이스케이프해도 안전하다
+            for (byte b : bytes) {
+                switch (b) {
+                    case '\\' -> { put((byte) '\\'); put((byte) '\\'); }
+                    case '\t' -> { put((byte) '\\'); put((byte) 't'); }
+                    case '\n' -> { put((byte) '\\'); put((byte) 'n'); }
+                    case '\r' -> { put((byte) '\\'); put((byte) 'r'); }
+                    case 0 -> { put((byte) '\\'); put((byte) '0'); }
+                    default -> put(b);
+                }
+            }
+        }
+
+        private void put(byte b) {
+            if (limit == buf.length) buf = Arrays.copyOf(buf, buf.length * 2); // 아주 큰 값이 들어온 경우
+            buf[limit++] = b;
+        }
+    }
+
+    // ====여러 행 INSERT (LOCAL INFILE을 쓸 수 없을 때)====
+
+    private static long batchInsert(Connection conn, String table, List<String> columns,
+                                    Set<String> bitColumns, Iterator<Object[]> rows) throws SQLException {
+        int batchRows = Math.max(1, Math.min(MAX_BATCH_ROWS, MAX_PLACEHOLDERS / columns.size()));
+        String rowPlaceHolders = "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        String prefix = "INSERT INTO `" + table + "` (" + quote(columns) + ") VALUES ";
+        boolean[] bits = new boolean[columns.size()];
+        for (int i = 0; i < bits.length; i++) bits[i] = bitColumns.contains(columns.get(i));
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false); // 전체를 하나의 트랜잭션으로 (LOAD DATA처럼 전부 들어가거나 전부 안 들어간다)
+        long total = 0;
+        try (PreparedStatement full = conn.prepareStatement(
+                prefix + String.join(", ", Collections.nCopies(batchRows, rowPlaceHolders)))) {
+            List<Object[]> batch = new ArrayList<>(batchRows);
+            while (rows.hasNext()) {
+                batch.add(rows.next());
+                if (batch.size() == batchRows) {
+                    total += insert(full, batch, bits);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) { // 마지막 남은 행
+                try (PreparedStatement rest = conn.prepareStatement(
+                        prefix + String.join(", ", Collections.nCopies(batch.size(), rowPlaceHolders)))) {
+                    total += insert(rest, batch, bits);
+                }
+            }
+            conn.commit();
+            return total;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static int insert(PreparedStatement ps, List<Object[]> batch, boolean[] bits) throws SQLException {
+        int index = 1;
+        for (Object[] row : batch) {
+            if (row.length != bits.length)
+                throw new IllegalArgumentException("컬럼 수(" + bits.length + ")와 값 수(" + row.length + ")가 다릅니다");
+            for (int i = 0; i < row.length; i++) {
+                Object value = row[i];
+                // 파일에서 읽은 "1"/"0"은 BIT 컬럼에 문자로 들어가지 않도록 숫자로 바꾼다
+                if (bits[i] && value instanceof String s) value = Integer.parseInt(s.trim());
+                ps.setObject(index++, value);
+            }
+        }
+        int inserted = ps.executeUpdate();
+        // strict 모드가 아니면 잘못된 값이 경고와 함께 바뀌어 들어가므로 LOAD DATA와 같이 실패로 본다
+        SQLWarning warnings = ps.getWarnings();
+        if (warnings != null) throw new SQLException("배치 INSERT 중 경고가 발생했습니다" + describe(warnings), warnings);
+        return inserted;
+    }
+
+    // TSV 파일을 한 줄씩 읽어 LOAD DATA와 같은 규칙으로 값 배열로 되돌린다
+    private static Iterator<Object[]> tsvRows(Path file) {
+        BufferedReader reader;
+        try {
+            reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return new Iterator<>() {
+            private String next = readLine();
+
+            private String readLine() {
+                try {
+                    String line = reader.readLine();
+                    if (line == null) reader.close();
+                    return line;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Object[] next() {
+                if (next == null) throw new NoSuchElementException();
+                String[] fields = next.split("\t", -1);
+                Object[] row = new Object[fields.length];
+                for (int i = 0; i < fields.length; i++) row[i] = unescape(fields[i]);
+                next = readLine();
+                return row;
+            }
+        };
+    }
+
+    private static String unescape(String field) {
+        if (field.equals("\\N")) return null;
+        if (field.indexOf('\\') < 0) return field;
+
+        StringBuilder sb = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c != '\\' || i + 1 == field.length()) {
+                sb.append(c);
+                continue;
+            }
+            char escaped = field.charAt(++i);
+            sb.append(switch (escaped) {
+                case 't' -> '\t';
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                case '0' -> '\0';
+                default -> escaped;
+            });
+        }
+        return sb.toString();
+    }
+}
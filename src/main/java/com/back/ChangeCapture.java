@@ -0,0 +1,388 @@
+package com.back;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+SimpleDb를 통해 실행되는 INSERT / UPDATE / DELETE를 변경 이벤트로 만든다
+
+- 실행 전: UPDATE / DELETE의 WHERE 조건으로 변경 전 이미지(before)를 FOR UPDATE로 잠가서 조회
+  (자동 커밋 쓰기도 SimpleDb가 짧은 트랜잭션으로 묶으므로 커밋 전까지 다른 쓰기가 끼어들지 못한다)
+- 실행 후: 직접 지정한 키, 생성된 키 또는 before의 PK로 변경 후 이미지(after)를 조회
+- 같은 Connection에서 조회하므로 트랜잭션 안에서도 자기 변경분이 보인다
+
+구독자가 있을 때만 사용되므로 구독자가 없으면 추가 쿼리 비용이 없다
+ */
+class ChangeCapture {
+    private static final Logger log = LoggerFactory.getLogger(ChangeCapture.class);
+
+    private static final Pattern WRITE = Pattern.compile(
+            "^\\s*(INSERT|REPLACE|UPDATE|DELETE)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern INSERT = Pattern.compile(
+            "^\\s*INSERT\\s+(?:(?:LOW_PRIORITY|HIGH_PRIORITY|DELAYED)\\s+)?(?!IGNORE\\b)(?:INTO\\s+)?`?(\\w+)`?\\s*",
+            Pattern.CASE_INSENSITIVE);
+    // 별칭, JOIN, 여러 테이블이 붙으면 WHERE 조건을 그대로 SELECT로 옮길 수 없으므로 테이블 바로 뒤만 허용
+    private static final Pattern UPDATE = Pattern.compile(
+            "^\\s*UPDATE\\s+(?:LOW_PRIORITY\\s+)?(?:IGNORE\\s+)?`?(\\w+)`?\\s+SET\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DELETE = Pattern.compile(
+            "^\\s*DELETE\\s+(?:LOW_PRIORITY\\s+)?(?:QUICK\\s+)?(?:IGNORE\\s+)?FROM\\s+`?(\\w+)`?\\s*(?=$|WHERE\\b|ORDER\\b|LIMIT\\b)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern INSERT_SOURCE = Pattern.compile(
+            "\\b(ON\\s+DUPLICATE\\s+KEY\\s+UPDATE|SELECT)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SET = Pattern.compile("SET\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern VALUES = Pattern.compile("\\bVALUES?\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHERE = Pattern.compile("\\bWHERE\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ORDER_OR_LIMIT = Pattern.compile("\\b(ORDER\\s+BY|LIMIT)\\b", Pattern.CASE_INSENSITIVE);
+
+    // 테이블 -> PK 컬럼 목록 (매번 메타데이터를 조회하지 않도록 캐싱)
+    private final Map<String, List<String>> primaryKeys = new ConcurrentHashMap<>();
+
+    // 변경 대상 테이블과 WHERE 조건, keys는 INSERT가 PK 값을 직접 지정했을 때의 값 (생성된 키를 쓰면 null)
+    record Target(ChangeEvent.Type type, String table, String where, List<Object> whereParams, List<Object> keys) {
+    }
+
+    /*
+    쓰기 문장이 아니면 null
+
+    정확한 이벤트를 만들 수 없는 쓰기도 null을 반환하고 경고만 남긴다 (문장 자체는 그대로 실행된다)
+    - REPLACE, INSERT IGNORE, ON DUPLICATE KEY UPDATE, INSERT ... SELECT: 어떤 행이 어떻게 바뀌었는지 알 수 없다
+    - 별칭, JOIN, 여러 테이블을 쓰는 UPDATE / DELETE: WHERE 조건을 단일 테이블 SELECT로 옮길 수 없다
+    - PK를 바꾸는 UPDATE: 바뀐 키를 몰라서 after를 다시 읽을 수 없다
+    - PK가 한 컬럼이 아닌 테이블의 INSERT / UPDATE, 컬럼 목록 없이 값을 직접 넣는 INSERT
+     */
+    Target target(Connection connection, String sql, List<Object> params) throws SQLException {
+        Matcher write = WRITE.matcher(sql);
+        if (!write.find()) return null;
+
+        Masked masked = Masked.of(sql);
+        return switch (write.group(1).toUpperCase()) {
+            case "INSERT" -> insertTarget(connection, sql, masked, params);
+            case "UPDATE" -> updateTarget(connection, sql, masked, params);
+            case "DELETE" -> deleteTarget(sql, masked, params);
+            default -> unsupported(sql, "REPLACE는 덮어쓴 기존 행을 알 수 없다");
+        };
+    }
+
+    private Target insertTarget(Connection connection, String sql, Masked masked,
+                                List<Object> params) throws SQLException {
+        Matcher m = INSERT.matcher(masked.sql());
+        if (!m.lookingAt()) return unsupported(sql, "INSERT IGNORE는 무시된 행을 알 수 없다");
+        if (masked.topLevel(INSERT_SOURCE, m.end()) != null) {
+            return unsupported(sql, "ON DUPLICATE KEY UPDATE / INSERT ... SELECT는 갱신되거나 복사된 행을 알 수 없다");
+        }
+
+        String table = m.group(1);
+        List<String> pk = primaryKey(connection, table);
+        if (pk.size() != 1) return unsupported(sql, "PK가 한 컬럼인 테이블만 INSERT를 캡처할 수 있다");
+
+        int rest = m.end();
+        int length = sql.length();
+        List<Object> keys = new ArrayList<>();
+
+        Matcher set = SET.matcher(masked.sql()).region(rest, length);
+        if (set.lookingAt()) { // INSERT INTO t SET a = ?, ...
+            for (int[] assignment : masked.split(set.end(), length, 0)) {
+                int eq = sql.indexOf('=', assignment[0]);
+                if (eq < 0 || eq >= assignment[1]) return unsupported(sql, "SET 절을 해석할 수 없다");
+                if (!column(sql.substring(assignment[0], eq)).equalsIgnoreCase(pk.get(0))) continue;
+                if (!isPlaceholder(sql, eq + 1, assignment[1])) {
+                    return unsupported(sql, "PK 값이 ? 파라미터가 아니다");
+                }
+                keys.add(params.get(masked.params(0, eq)));
+            }
+            return new Target(ChangeEvent.Type.INSERT, table, null, List.of(), keys.isEmpty() ? null : keys);
+        }
+
+        if (rest >= length || sql.charAt(rest) != '(') return unsupported(sql, "컬럼 목록이 없는 INSERT");
+        int columnsEnd = masked.closing(rest);
+        int keyIndex = -1;
+        List<int[]> columns = masked.split(rest + 1, columnsEnd, 1);
+        for (int i = 0; i < columns.size(); i++) {
+            if (column(sql.substring(columns.get(i)[0], columns.get(i)[1])).equalsIgnoreCase(pk.get(0))) keyIndex = i;
+        }
+
+        MatchResult values = masked.topLevel(VALUES, columnsEnd);
+        if (values == null) return unsupported(sql, "VALUES 절을 찾을 수 없다");
+        if (keyIndex < 0) return new Target(ChangeEvent.Type.INSERT, table, null, List.of(), null);
+
+        // VALUES (?, ?), (?, ?) 의 각 행에서 PK 자리의 ? 파라미터를 키로 쓴다
+        for (int i = values.end(); i < length; i++) {
+            if (masked.sql().charAt(i) != '(' || masked.depth(i) != 0) continue;
+            int close = masked.closing(i);
+            List<int[]> items = masked.split(i + 1, close, 1);
+            if (items.size() != columns.size()) return unsupported(sql, "VALUES의 값 개수가 컬럼 수와 다르다");
+            int[] item = items.get(keyIndex);
+            if (!isPlaceholder(sql, item[0], item[1])) return unsupported(sql, "PK 값이 ? 파라미터가 아니다");
+            keys.add(params.get(masked.params(0, item[0])));
+            i = close;
+        }
+        return new Target(ChangeEvent.Type.INSERT, table, null, List.of(), keys);
+    }
+
+    private Target updateTarget(Connection connection, String sql, Masked masked,
+                                List<Object> params) throws SQLException {
+        Matcher m = UPDATE.matcher(masked.sql());
+        if (!m.lookingAt()) return unsupported(sql, "별칭, JOIN, 여러 테이블을 쓰는 UPDATE");
+
+        String table = m.group(1);
+        List<String> pk = primaryKey(connection, table);
+        if (pk.size() != 1) return unsupported(sql, "PK가 한 컬럼인 테이블만 UPDATE를 캡처할 수 있다");
+
+        MatchResult where = masked.topLevel(WHERE, m.end());
+        MatchResult orderOrLimit = masked.topLevel(ORDER_OR_LIMIT, m.end());
+        int setEnd = where != null ? where.start() : orderOrLimit != null ? orderOrLimit.start() : sql.length();
+        for (int[] assignment : masked.split(m.end(), setEnd, 0)) {
+            int eq = sql.indexOf('=', assignment[0]);
+            if (eq < 0 || eq >= assignment[1]) return unsupported(sql, "SET 절을 해석할 수 없다");
+            if (column(sql.substring(assignment[0], eq)).equalsIgnoreCase(pk.get(0))) {
+                return unsupported(sql, "PK를 바꾸는 UPDATE는 after를 다시 읽을 수 없다");
+            }
+        }
+        return condition(ChangeEvent.Type.UPDATE, table, sql, masked, m.end(), params);
+    }
+
+    private static Target deleteTarget(String sql, Masked masked, List<Object> params) {
+        Matcher m = DELETE.matcher(masked.sql());
+        if (!m.lookingAt()) return unsupported(sql, "별칭, JOIN, 여러 테이블을 쓰는 DELETE");
+        return condition(ChangeEvent.Type.DELETE, m.group(1), sql, masked, m.end(), params);
+    }
+
+    // 서브쿼리 안이 아닌 맨 바깥 WHERE부터 끝까지가 조건이고, 그 앞에 있는 ? 개수만큼 건너뛴 나머지가 조건의 파라미터다
+    private static Target condition(ChangeEvent.Type type, String table, String sql, Masked masked,
+                                    int from, List<Object> params) {
+        MatchResult where = masked.topLevel(WHERE, from);
+        String condition;
+        int start;
+        if (where != null) {
+            condition = sql.substring(where.end());
+            start = where.end();
+        } else {
+            // WHERE 없이 ORDER BY / LIMIT만 있으면 전체 테이블이 아니라 그만큼만 잠가야 한다
+            MatchResult orderOrLimit = masked.topLevel(ORDER_OR_LIMIT, from);
+            if (orderOrLimit == null) return new Target(type, table, null, List.of(), null);
+            condition = "TRUE " + sql.substring(orderOrLimit.start());
+            start = orderOrLimit.start();
+        }
+        List<Object> conditionParams = params.subList(masked.params(0, start), params.size());
+        return new Target(type, table, condition, new ArrayList<>(conditionParams), null);
+    }
+
+    private static Target unsupported(String sql, String reason) {
+        log.warn("변경 이벤트를 만들 수 없는 쓰기라 캡처하지 않습니다 ({}): {}", reason, sql);
+        return null;
+    }
+
+    // `t`.`col`, t.col, `col` -> col
+    private static String column(String expression) {
+        String column = expression.trim();
+        column = column.substring(column.lastIndexOf('.') + 1);
+        return column.replace("`", "").trim();
+    }
+
+    private static boolean isPlaceholder(String sql, int from, int to) {
+        return sql.substring(from, to).trim().equals("?");
+    }
+
+    /*
+    문자열 리터럴 안의 글자를 공백으로 가린 SQL과 글자마다의 괄호 깊이
+    리터럴 안의 ?, WHERE, 괄호, 쉼표를 세지 않고, 서브쿼리 안의 WHERE를 맨 바깥 WHERE로 착각하지 않도록 쓴다
+     */
+    private record Masked(String sql, int[] depths) {
+        static Masked of(String sql) {
+            char[] chars = sql.toCharArray();
+            int[] depths = new int[chars.length];
+            int level = 0;
+            char quote = 0;
+            for (int i = 0; i < chars.length; i++) {
+                char c = chars[i];
+                depths[i] = level;
+                if (quote != 0) {
+                    if (c == '\\' && i + 1 < chars.length) {
+                        chars[i] = ' ';
+                        chars[++i] = ' ';
+                        depths[i] = level;
+                    } else if (c == quote) {
+                        quote = 0;
+                    } else {
+                        chars[i] = ' ';
+                    }
+                } else if (c == '\'' || c == '"') {
+                    quote = c;
+                } else if (c == '(') {
+                    level++;
+                } else if (c == ')') {
+                    depths[i] = --level;
+                }
+            }
+            return new Masked(new String(chars), depths);
+        }
+
+        int depth(int index) {
+            return depths[index];
+        }
+
+        // from 이후 괄호 밖에서 처음 나오는 pattern, 없으면 null
+        MatchResult topLevel(Pattern pattern, int from) {
+            Matcher m = pattern.matcher(sql).region(from, sql.length()).useTransparentBounds(true);
+            while (m.find()) {
+                if (depths[m.start()] == 0) return m.toMatchResult();
+            }
+            return null;
+        }
+
+        // [from, to) 범위의 ? 개수
+        int params(int from, int to) {
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (sql.charAt(i) == '?') count++;
+            }
+            return count;
+        }
+
+        // open 위치의 ( 와 짝이 맞는 ) 위치
+        int closing(int open) {
+            for (int i = open + 1; i < sql.length(); i++) {
+                if (sql.charAt(i) == ')' && depths[i] == depths[open]) return i;
+            }
+            return sql.length();
+        }
+
+        // [from, to) 범위를 깊이 depth의 쉼표로 나눈 구간들
+        List<int[]> split(int from, int to, int depth) {
+            List<int[]> parts = new ArrayList<>();
+            int start = from;
+            for (int i = from; i < to; i++) {
+                if (sql.charAt(i) == ',' && depths[i] == depth) {
+                    parts.add(new int[]{start, i});
+                    start = i + 1;
+                }
+            }
+            parts.add(new int[]{start, to});
+            return parts;
+        }
+    }
+
+    // 변경 전 이미지 조회 (INSERT는 before가 없다)
+    List<Map<String, Object>> before(Connection connection, Target target) throws SQLException {
+        if (target.type() == ChangeEvent.Type.INSERT) return List.of();
+
+        String sql = "SELECT * FROM `" + target.table() + "`";
+        if (target.where() != null) sql += " WHERE " + target.where();
+        return query(connection, sql + " FOR UPDATE", target.whereParams());
+    }
+
+    List<ChangeEvent> changes(Connection connection, Target target,
+                              List<Map<String, Object>> before, List<Long> generatedKeys) throws SQLException {
+        List<String> pk = primaryKey(connection, target.table());
+        List<ChangeEvent> events = new ArrayList<>();
+
+        switch (target.type()) {
+            case INSERT -> {
+                // 키를 직접 지정했으면 그 값을, 아니면 DB가 생성한 키를 쓴다
+                List<Object> keys = target.keys() != null ? target.keys() : new ArrayList<>(generatedKeys);
+                if (keys.isEmpty()) {
+                    log.warn("INSERT된 행의 키를 알 수 없어 변경 이벤트를 발행하지 않습니다: {}", target.table());
+                    break;
+                }
+                Map<Object, Map<String, Object>> after = selectByKeys(connection, target.table(), pk.get(0), keys);
+                for (Object key : keys) {
+                    Object normalized = normalize(key);
+                    events.add(new ChangeEvent(0, target.table(), target.type(), normalized, null, after.get(normalized)));
+                }
+            }
+            case UPDATE -> {
+                List<Object> keys = before.stream().map(row -> keyOf(row, pk)).toList();
+                Map<Object, Map<String, Object>> after = !keys.isEmpty()
+                        ? selectByKeys(connection, target.table(), pk.get(0), keys)
+                        : Map.of();
+                for (int i = 0; i < before.size(); i++) {
+                    Object key = keys.get(i);
+                    events.add(new ChangeEvent(0, target.table(), target.type(), key, before.get(i),
+                            key == null ? null : after.get(key)));
+                }
+            }
+            case DELETE -> {
+                for (Map<String, Object> row : before) {
+                    events.add(new ChangeEvent(0, target.table(), target.type(), keyOf(row, pk), row, null));
+                }
+            }
+        }
+        return events;
+    }
+
+    static List<Long> generatedKeys(Statement statement) throws SQLException {
+        List<Long> keys = new ArrayList<>();
+        try (ResultSet rs = statement.getGeneratedKeys()) {
+            while (rs.next()) keys.add(rs.getLong(1));
+        }
+        return keys;
+    }
+
+    private List<String> primaryKey(Connection connection, String table) throws SQLException {
+        List<String> cached = primaryKeys.get(table);
+        if (cached != null) return cached;
+
+        List<String> columns = new ArrayList<>();
+        try (ResultSet rs = connection.getMetaData().getPrimaryKeys(connection.getCatalog(), null, table)) {
+            while (rs.next()) columns.add(rs.getString("COLUMN_NAME"));
+        }
+        primaryKeys.put(table, columns);
+        return columns;
+    }
+
+    // 단일 PK는 값 그대로, 복합 PK는 값 목록
+    private static Object keyOf(Map<String, Object> row, List<String> pk) {
+        if (pk.isEmpty()) return null;
+        if (pk.size() == 1) return normalize(row.get(pk.get(0)));
+        List<Object> values = new ArrayList<>();
+        for (String column : pk) values.add(row.get(column));
+        return values;
+    }
+
+    // INT UNSIGNED는 Long, BIGINT UNSIGNED는 BigInteger로 읽히므로 정수 키는 Long으로 맞춘다
+    private static Object normalize(Object key) {
+        if (key instanceof Number n && !(key instanceof Double || key instanceof Float)) return n.longValue();
+        return key;
+    }
+
+    private Map<Object, Map<String, Object>> selectByKeys(Connection connection, String table,
+                                                          String column, List<Object> keys) throws SQLException {
+        String placeHolders = String.join(", ", Collections.nCopies(keys.size(), "?"));
+        String sql = "SELECT * FROM `" + table + "` WHERE `" + column + "` IN (" + placeHolders + ")";
+
+        Map<Object, Map<String, Object>> rows = new HashMap<>();
+        for (Map<String, Object> row : query(connection, sql, keys)) {
+            rows.put(normalize(row.get(column)), row);
+        }
+        return rows;
+    }
+
+    private static List<Map<String, Object>> query(Connection connection, String sql,
+                                                   List<Object> params) throws SQLException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                int columnCount = meta.getColumnCount();
+                while (rs.next()) {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (int i = 1; i <= columnCount; i++) {
+                        row.put(meta.getColumnLabel(i), rs.getObject(i));
+                    }
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+}
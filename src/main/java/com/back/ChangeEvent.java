@@ -0,0 +1,28 @@
+package com.back;
+
+import java.util.Map;
+
+/*
+커밋된 INSERT / UPDATE / DELETE 한 건에 대한 변경 이벤트
+
+sequence: 커밋 순서대로 증가하는 번호 (구독자가 순서를 확인할 수 있다)
+primaryKey: 변경된 행의 PK 값 (PK를 알 수 없으면 null)
+before: 변경 전 행 이미지 (INSERT는 null)
+after: 변경 후 행 이미지 (DELETE는 null, 조회할 수 없으면 null)
+ */
+public record ChangeEvent(
+        long sequence,
+        String table,
+        Type type,
+        Object primaryKey,
+        Map<String, Object> before,
+        Map<String, Object> after
+) {
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    ChangeEvent withSequence(long sequence) {
+        return new ChangeEvent(sequence, table, type, primaryKey, before, after);
+    }
+}
@@ -0,0 +1,83 @@
+package com.back;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+SQL 모양(파라미터 바인딩 전 SQL 문자열)별 결과 컬럼 정보 캐시
+
+getObject(i)는 드라이버가 매번 타입을 보고 변환 방법을 고르므로,
+컬럼마다 어떤 getter로 읽을지(Reader)를 한 번만 정해두고 같은 SQL이면 재사용한다
+Reader는 getObject(i)가 돌려줬을 자바 타입과 같은 타입을 돌려준다 (getColumnClassName 기준)
+ */
+final class ColumnTypes {
+    private static final int MAX_ENTRIES = 1024; // 동적으로 만든 SQL이 많아도 캐시가 무한히 커지지 않도록
+
+    private final Map<String, Column[]> cache = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    interface Reader {
+        Object read(ResultSet rs, int column) throws SQLException;
+    }
+
+    record Column(String label, int sqlType, String className, Reader reader) {
+    }
+
+    Column[] of(String sql, ResultSetMetaData meta) throws SQLException {
+        Column[] columns = cache.get(sql);
+        // SELECT * 는 테이블이 바뀌면 컬럼이 달라질 수 있으므로 컬럼 수가 다르면 다시 만든다
+        if (columns != null && columns.length == meta.getColumnCount()) return columns;
+
+        columns = resolve(meta);
+        if (cache.size() >= MAX_ENTRIES) cache.clear();
+        cache.put(sql, columns);
+        return columns;
+    }
+
+    static Column[] resolve(ResultSetMetaData meta) throws SQLException {
+        Column[] columns = new Column[meta.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            String className = meta.getColumnClassName(i + 1);
+            columns[i] = new Column(meta.getColumnLabel(i + 1), meta.getColumnType(i + 1), className, readerFor(className));
+        }
+        return columns;
+    }
+
+    private static Reader readerFor(String className) {
+        if (className == null) return ResultSet::getObject;
+        return switch (className) {
+            case "java.lang.Long" -> (rs, i) -> {
+                long value = rs.getLong(i);
+                return rs.wasNull() ? null : value;
+            };
+            case "java.lang.Integer" -> (rs, i) -> {
+                int value = rs.getInt(i);
+                return rs.wasNull() ? null : value;
+            };
+            case "java.lang.Boolean" -> (rs, i) -> {
+                boolean value = rs.getBoolean(i);
+                return rs.wasNull() ? null : value;
+            };
+            case "java.lang.Double" -> (rs, i) -> {
+                double value = rs.getDouble(i);
+                return rs.wasNull() ? null : value;
+            };
+            case "java.lang.Float" -> (rs, i) -> {
+                float value = rs.getFloat(i);
+                return rs.wasNull() ? null : value;
+            };
+            case "java.lang.String" -> ResultSet::getString;
+            case "java.math.BigDecimal" -> ResultSet::getBigDecimal;
+            case "java.time.LocalDateTime" -> (rs, i) -> rs.getObject(i, LocalDateTime.class);
+            case "java.time.LocalDate" -> (rs, i) -> rs.getObject(i, LocalDate.class);
+            case "java.sql.Timestamp" -> ResultSet::getTimestamp;
+            case "java.sql.Date" -> ResultSet::getDate;
+            default -> ResultSet::getObject;
+        };
+    }
+}
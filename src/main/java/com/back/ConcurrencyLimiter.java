@@ -0,0 +1,263 @@
+package com.back;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+DB로 동시에 보내는 쿼리 수를 관측한 지연 시간에 맞춰 조절하는 장치 (AIMD)
+
+- 한도(limit)만큼만 동시에 실행하고, 나머지는 우선순위별 대기열에서 기다린다
+- 지연 시간이 최근 최소 지연 시간 * tolerance 안이면 한도를 조금씩 올리고 (additive increase, 한도만큼 끝날 때마다 +1)
+  넘거나 타임아웃이 나면 한도를 backoff 배로 줄인다 (multiplicative decrease)
+- 최소 지연 시간은 우선순위별로 따로 잡는다
+  -> 빠른 단건 조회와 느린 배치 조회가 섞여도 배치 조회가 단건 조회의 기준보다 느리다는 이유로 한도를 줄이지 않는다
+- 최소 지연 시간은 WINDOW개 샘플마다 다시 잡아 DB의 기준 속도가 바뀌어도 따라간다
+- 한 번 느려진 동안 끝나는 쿼리마다 줄이지 않도록 max(MIN_DECREASE_INTERVAL, 기준 * tolerance)에 한 번만 줄인다
+- 대기열이 가득 찼거나 maxQueueWait 안에 차례가 오지 않으면 기다리지 않고 SimpleDbOverloadException으로 거절한다
+  -> DB가 느려져도 호출자가 무한정 쌓이지 않아 꼬리 지연 시간이 maxQueueWait + 쿼리 시간으로 묶인다
+
+트랜잭션은 문장 단위로 한도를 잡으므로 트랜잭션 전체가 한 자리를 계속 차지하지는 않는다
+
+기본은 꺼져 있다 (켜기 전과 같이 모든 쿼리를 바로 실행), 쓰려면 simpleDb.getConcurrencyLimiter().setEnabled(true)
+ */
+public class ConcurrencyLimiter {
+    private static final int WINDOW = 500;
+    private static final long MIN_DECREASE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // 우선순위별 지연 시간 기준 (lock 안에서만 변경)
+    private static final class Baseline {
+        long minLatency = Long.MAX_VALUE;
+        long windowMinLatency = Long.MAX_VALUE;
+        int samples = 0;
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<QueryPriority, ArrayDeque<CompletableFuture<Void>>> queues = new EnumMap<>(QueryPriority.class);
+    private final Map<QueryPriority, Integer> maxQueued = new EnumMap<>(QueryPriority.class);
+    private final Map<QueryPriority, Baseline> baselines = new EnumMap<>(QueryPriority.class);
+    private final SimpleDbMetrics metrics;
+
+    private volatile boolean enabled = false;
+    private volatile Duration maxQueueWait = Duration.ofSeconds(1);
+    private double tolerance = 2.0;
+    private double backoff = 0.9;
+    private int minLimit = 1;
+    private int maxLimit = 200;
+
+    // lock 안에서만 변경
+    private double limit = 20;
+    private int inflight = 0;
+    private int queued = 0;
+    private long lastDecreaseNanos = 0;
+
+    ConcurrencyLimiter(SimpleDbMetrics metrics) {
+        this.metrics = metrics;
+        for (QueryPriority priority : QueryPriority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+            baselines.put(priority, new Baseline());
+        }
+        maxQueued.put(QueryPriority.WRITE, 1000);
+        maxQueued.put(QueryPriority.INTERACTIVE, 500);
+        maxQueued.put(QueryPriority.BATCH, 100); // 배치는 오래 기다리게 하기보다 빨리 거절한다
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 한도가 찼을 때 대기열에서 기다릴 최대 시간 (쿼리의 남은 시간 예산이 더 짧으면 그쪽)
+    public void setMaxQueueWait(Duration maxQueueWait) {
+        this.maxQueueWait = maxQueueWait;
+    }
+
+    public void setMaxQueued(QueryPriority priority, int max) {
+        lock.lock();
+        try {
+            maxQueued.put(priority, max);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setLimits(int initial, int min, int max) {
+        if (min < 1 || min > initial || initial > max)
+            throw new IllegalArgumentException("1 <= min <= initial <= max 이어야 합니다: " + min + ", " + initial + ", " + max);
+        lock.lock();
+        try {
+            limit = initial;
+            minLimit = min;
+            maxLimit = max;
+            grant();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // tolerance: 최소 지연 시간의 몇 배까지를 정상으로 볼지, backoff: 줄일 때 곱할 값 (0 ~ 1)
+    public void setGradient(double tolerance, double backoff) {
+        if (tolerance <= 1 || backoff <= 0 || backoff >= 1)
+            throw new IllegalArgumentException("tolerance > 1, 0 < backoff < 1 이어야 합니다");
+        lock.lock();
+        try {
+            this.tolerance = tolerance;
+            this.backoff = backoff;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInflight() {
+        lock.lock();
+        try {
+            return inflight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+    실행 자리를 얻는다. 얻었으면 true, 꺼져 있으면 false (이때는 release를 부르지 않는다)
+    maxWaitNanos: 쿼리의 남은 시간 예산 (Long.MAX_VALUE면 maxQueueWait만 적용)
+     */
+    boolean acquire(QueryPriority priority, long maxWaitNanos) {
+        if (!enabled) return false;
+
+        CompletableFuture<Void> waiter;
+        lock.lock();
+        try {
+            if (queued == 0 && inflight < (int) limit) {
+                inflight++;
+                return true;
+            }
+            ArrayDeque<CompletableFuture<Void>> queue = queues.get(priority);
+            if (queue.size() >= maxQueued.get(priority)) {
+                throw reject("대기열이 가득 찼습니다 (" + priority + ", limit " + (int) limit + ")");
+            }
+            waiter = new CompletableFuture<>();
+            queue.addLast(waiter);
+            queued++;
+        } finally {
+            lock.unlock();
+        }
+
+        long waitNanos = Math.min(maxQueueWait.toNanos(), maxWaitNanos);
+        try {
+            waiter.get(waitNanos, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            if (abandon(priority, waiter)) throw reject("실행 대기 시간을 넘었습니다 (" + priority + ", limit " + getLimit() + ")");
+            return true; // 포기하기 직전에 자리를 받았다
+        } catch (InterruptedException e) {
+            if (!abandon(priority, waiter)) release(priority, -1, false);
+            Thread.currentThread().interrupt();
+            throw new QueryCancelledException("실행 대기 중 인터럽트되었습니다", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause()); // complete(null)만 하므로 오지 않는다
+        }
+    }
+
+    /*
+    실행이 끝나면 반드시 호출한다
+    priority: acquire에 넘긴 우선순위
+    latencyNanos: 쿼리 실행 시간 (실행 전에 실패했으면 음수 -> 한도 조절에 쓰지 않는다)
+    dropped: 타임아웃 등 과부하로 실패했는지
+     */
+    void release(QueryPriority priority, long latencyNanos, boolean dropped) {
+        lock.lock();
+        try {
+            Baseline baseline = baselines.get(priority);
+            if (dropped) decrease(baseline, System.nanoTime());
+            else if (latencyNanos >= 0) sample(baseline, latencyNanos);
+            inflight--;
+            grant();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void sample(Baseline baseline, long latencyNanos) {
+        baseline.windowMinLatency = Math.min(baseline.windowMinLatency, latencyNanos);
+        if (++baseline.samples >= WINDOW) { // 기준 다시 잡기
+            baseline.minLatency = baseline.windowMinLatency;
+            baseline.windowMinLatency = Long.MAX_VALUE;
+            baseline.samples = 0;
+        }
+        baseline.minLatency = Math.min(baseline.minLatency, latencyNanos);
+
+        if (latencyNanos > baseline.minLatency * tolerance) {
+            decrease(baseline, System.nanoTime());
+        } else if (inflight * 2 >= limit) { // 한도의 절반도 안 쓰고 있으면 올릴 근거가 없다
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    private void decrease(Baseline baseline, long now) {
+        // 한 번 느려진 동안 끝나는 쿼리마다 줄이면 한도가 바닥까지 떨어지므로
+        // 느려진 쿼리가 끝날 만큼의 시간(기준 * tolerance, 최소 MIN_DECREASE_INTERVAL)에 한 번만
+        long interval = MIN_DECREASE_INTERVAL_NANOS;
+        if (baseline.minLatency != Long.MAX_VALUE)
+            interval = Math.max(interval, (long) (baseline.minLatency * tolerance));
+        if (lastDecreaseNanos != 0 && now - lastDecreaseNanos < interval) return;
+        lastDecreaseNanos = now;
+        limit = Math.max(minLimit, limit * backoff);
+    }
+
+    // 빈 자리를 우선순위 순서대로 대기 중인 호출에 넘긴다
+    private void grant() {
+        for (QueryPriority priority : QueryPriority.values()) {
+            ArrayDeque<CompletableFuture<Void>> queue = queues.get(priority);
+            while (inflight < (int) limit && !queue.isEmpty()) {
+                CompletableFuture<Void> waiter = queue.pollFirst();
+                queued--;
+                inflight++;
+                waiter.complete(null);
+            }
+        }
+    }
+
+    // 대기열에서 빠졌으면 true, 이미 자리를 받았으면 false
+    private boolean abandon(QueryPriority priority, CompletableFuture<Void> waiter) {
+        lock.lock();
+        try {
+            if (!queues.get(priority).remove(waiter)) return false;
+            queued--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private SimpleDbOverloadException reject(String message) {
+        metrics.rejections.increment();
+        return new SimpleDbOverloadException(message);
+    }
+}
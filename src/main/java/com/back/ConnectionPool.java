@@ -0,0 +1,204 @@
+package com.back;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+SimpleDb 전용 커넥션 풀
+
+- 최대 maxSize개까지만 만들고, 모두 사용 중이면 borrowTimeout까지 기다린다
+- 빌려준 커넥션의 close()는 실제로 닫지 않고 풀에 반납한다 (Sql / startTransaction 코드는 그대로)
+- 반납할 때 트랜잭션이 남아 있으면 롤백하고 autoCommit을 되돌려 다음 사용자에게 상태가 새지 않게 한다
+- 가장 최근에 반납된 커넥션부터 다시 빌려준다 (LIFO)
+  -> 자주 쓰는 커넥션에 서버측 PreparedStatement 캐시가 쌓이고, 남는 커넥션은 오래 쉬게 된다
+- 오래 쉰 커넥션은 빌려주기 전에 isValid로 확인한다 (wait_timeout으로 서버가 끊은 경우)
+ */
+final class ConnectionPool {
+    @FunctionalInterface
+    interface Opener {
+        Connection open() throws SQLException;
+    }
+
+    private static final long VALIDATE_AFTER_IDLE_NANOS = Duration.ofSeconds(30).toNanos();
+
+    private record Idle(Connection connection, long returnedNanos) {
+    }
+
+    private final Opener opener;
+    private final int maxSize;
+    private final Duration borrowTimeout;
+    private final Semaphore available;
+    private final LinkedBlockingDeque<Idle> idle = new LinkedBlockingDeque<>();
+    private volatile boolean closed = false;
+
+    ConnectionPool(Opener opener, int maxSize, Duration borrowTimeout) {
+        if (maxSize <= 0) throw new IllegalArgumentException("풀 크기는 0보다 커야 합니다: " + maxSize);
+        this.opener = opener;
+        this.maxSize = maxSize;
+        this.borrowTimeout = borrowTimeout;
+        this.available = new Semaphore(maxSize, true);
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    int getActive() {
+        return maxSize - available.availablePermits();
+    }
+
+    int getIdle() {
+        return idle.size();
+    }
+
+    Connection borrow() throws SQLException {
+        if (closed) throw new SQLException("커넥션 풀이 종료되었습니다");
+        try {
+            if (!available.tryAcquire(borrowTimeout.toNanos(), TimeUnit.NANOSECONDS))
+                throw new SQLException("커넥션 풀에서 " + borrowTimeout.toMillis() + "ms 안에 커넥션을 얻지 못했습니다 (최대 " + maxSize + "개)");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("커넥션을 기다리다 인터럽트되었습니다", e);
+        }
+
+        try {
+            return wrap(takeIdleOrOpen());
+        } catch (SQLException | RuntimeException e) {
+            available.release();
+            throw e;
+        }
+    }
+
+    /*
+    connections개까지 미리 연결해 두고, 커넥션마다 statements를 미리 prepare 한다
+    (useServerPrepStmts + cachePrepStmts 설정이면 close() 후에도 서버측 문장이 커넥션 캐시에 남아 첫 실행에서 PREPARE를 건너뛴다)
+     */
+    void fill(int connections, List<String> statements) throws SQLException {
+        int target = Math.min(connections, maxSize);
+        int acquired = 0;
+        try {
+            while (acquired < target && available.tryAcquire()) acquired++;
+
+            while (idle.size() < acquired) {
+                Connection connection = opener.open();
+                for (String sql : statements) prepareQuietly(connection, sql);
+                idle.offerFirst(new Idle(connection, System.nanoTime()));
+            }
+        } finally {
+            available.release(acquired);
+        }
+    }
+
+    // prepare만 하고 실행하지 않는다 (테이블이 아직 없는 등 prepare에 실패한 문장은 건너뛴다)
+    static void prepareQuietly(Connection connection, String sql) {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.getParameterMetaData();
+        } catch (SQLException ignore) {}
+    }
+
+    // 쉬고 있는 커넥션을 닫는다, 사용 중인 커넥션은 반납될 때 닫힌다
+    void close() {
+        closed = true;
+        Idle entry;
+        while ((entry = idle.pollFirst()) != null) closeQuietly(entry.connection());
+    }
+
+    private Connection takeIdleOrOpen() throws SQLException {
+        Idle entry;
+        while ((entry = idle.pollFirst()) != null) {
+            Connection connection = entry.connection();
+            boolean stale = System.nanoTime() - entry.returnedNanos() > VALIDATE_AFTER_IDLE_NANOS;
+            if (!stale || connection.isValid(2)) return connection;
+            closeQuietly(connection);
+        }
+        return opener.open();
+    }
+
+    private void giveBack(Connection connection) {
+        try {
+            if (closed || connection.isClosed()) {
+                closeQuietly(connection);
+                return;
+            }
+            if (!connection.getAutoCommit()) { // 커밋/롤백하지 않은 트랜잭션은 버린다
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            connection.clearWarnings();
+            idle.offerFirst(new Idle(connection, System.nanoTime()));
+        } catch (SQLException e) {
+            closeQuietly(connection); // 상태를 되돌릴 수 없는 커넥션은 버린다
+        } finally {
+            available.release();
+        }
+    }
+
+    private Connection wrap(Connection physical) {
+        return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Borrowed(physical));
+    }
+
+    // 빌려준 커넥션: close()는 반납, 반납한 뒤에는 사용할 수 없다
+    private final class Borrowed implements InvocationHandler {
+        private final Connection physical;
+        private boolean returned = false;
+
+        Borrowed(Connection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    synchronized (this) {
+                        if (returned) return null;
+                        returned = true;
+                    }
+                    giveBack(physical);
+                    return null;
+                }
+                case "isClosed" -> {
+                    synchronized (this) {
+                        if (returned) return true;
+                    }
+                    return physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "pooled " + physical;
+                }
+            }
+
+            synchronized (this) {
+                if (returned) throw new SQLException("풀에 반납한 커넥션입니다");
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignore) {}
+    }
+}
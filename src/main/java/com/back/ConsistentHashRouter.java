@@ -0,0 +1,66 @@
+package com.back;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+일관된 해싱(consistent hashing) 라우터
+
+샤드마다 가상 노드를 여러 개 링 위에 올려두고, 키의 해시에서 시계 방향으로 가장 가까운 노드의 샤드를 고른다
+샤드를 추가/제거해도 대부분의 키는 원래 샤드에 그대로 남는다
+ */
+public class ConsistentHashRouter implements ShardRouter {
+    private static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+    private final int shardCount;
+
+    public ConsistentHashRouter(int shardCount) {
+        this(shardCount, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRouter(int shardCount, int virtualNodes) {
+        if (shardCount <= 0) throw new IllegalArgumentException("샤드는 1개 이상이어야 합니다");
+        this.shardCount = shardCount;
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                ring.put(hash("shard-" + shard + "#" + v), shard);
+            }
+        }
+    }
+
+    @Override
+    public int shardFor(Object shardKey) {
+        if (shardKey == null) throw new IllegalArgumentException("샤드 키가 null입니다");
+        long hash = shardKey instanceof Number n ? mix(n.longValue()) : hash(shardKey.toString());
+
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash);
+        return (entry == null ? ring.firstEntry() : entry).getValue(); // 링의 끝을 넘으면 처음으로
+    }
+
+    @Override
+    public int shardCount() {
+        return shardCount;
+    }
+
+    // FNV-1a 64bit 후 비트 섞기
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // 연속된 id도 링 위에 고르게 퍼지도록 섞는다 (MurmurHash3 fmix64)
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,93 @@
+package com.back;
+
+import com.mysql.cj.conf.PropertySet;
+import com.mysql.cj.protocol.StandardSocketFactory;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/*
+MySQL 드라이버가 쓰는 소켓을 감싸 실제로 주고받은 바이트 수를 센다 (useCompression이면 압축된 크기)
+SimpleDb.setWireMetricsEnabled(true)가 socketFactory 설정으로 이 클래스를 지정한다
+
+드라이버는 쿼리를 실행한 스레드에서 소켓을 읽고 쓰므로 스레드별로 누적해 두고
+Sql이 실행 전후의 차이로 쿼리 한 건의 전송량을 구한다
+ */
+public class CountingSocketFactory extends StandardSocketFactory {
+    private static final ThreadLocal<long[]> COUNTERS = ThreadLocal.withInitial(() -> new long[2]);
+    private static final int SENT = 0;
+    private static final int RECEIVED = 1;
+
+    // 현재 스레드에서 지금까지 보낸 / 받은 바이트
+    static long sentByCurrentThread() {
+        return COUNTERS.get()[SENT];
+    }
+
+    static long receivedByCurrentThread() {
+        return COUNTERS.get()[RECEIVED];
+    }
+
+    @Override
+    protected Socket createSocket(PropertySet props) {
+        return new CountingSocket();
+    }
+
+    private static final class CountingSocket extends Socket {
+        private InputStream in;
+        private OutputStream out;
+
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            if (in == null) in = new CountingInputStream(super.getInputStream());
+            return in;
+        }
+
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException {
+            if (out == null) out = new CountingOutputStream(super.getOutputStream());
+            return out;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) COUNTERS.get()[RECEIVED]++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) COUNTERS.get()[RECEIVED] += n;
+            return n;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            COUNTERS.get()[SENT]++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len); // FilterOutputStream은 한 바이트씩 쓰므로 그대로 넘긴다
+            COUNTERS.get()[SENT] += len;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.back;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/*
+ResultSet을 List<Map>으로 만들지 않고 읽는 대로 JSON 배열로 쓴다
+[{"id":1,"title":"제목1","createdDate":"2025-09-01T10:00:00","isBlind":false}, ...]
+
+- 컬럼 이름은 미리 직렬화(SerializedString)해서 행마다 이스케이프하지 않는다
+- 컬럼별로 JSON에 쓰는 방법을 한 번만 정한다
+  DATETIME -> ISO-8601 문자열 (jackson-datatype-jsr310 + WRITE_DATES_AS_TIMESTAMPS 끔과 같은 모양)
+  BIT(1) -> true / false
+ */
+final class JsonRowWriter {
+    static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET) // 호출자의 OutputStream은 닫지 않는다
+            .disable(StreamWriteFeature.AUTO_CLOSE_CONTENT) // 중간에 실패하면 ]를 붙이지 않아 잘린 JSON이 정상 응답처럼 보이지 않게
+            .build();
+
+    private static final int FLUSH_EVERY = 1000; // 이 행 수마다 내보내 클라이언트가 바로 받기 시작하도록
+
+    @FunctionalInterface
+    private interface ValueWriter {
+        void write(ResultSet rs, int column, JsonGenerator gen) throws SQLException, IOException;
+    }
+
+    private JsonRowWriter() {
+    }
+
+    static long write(ResultSet rs, ColumnTypes.Column[] columns, JsonGenerator gen) throws SQLException, IOException {
+        SerializableString[] names = new SerializableString[columns.length];
+        ValueWriter[] writers = new ValueWriter[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            names[i] = new SerializedString(columns[i].label());
+            writers[i] = writerFor(columns[i]);
+        }
+
+        long rows = 0;
+        gen.writeStartArray();
+        while (rs.next()) {
+            gen.writeStartObject();
+            for (int i = 0; i < columns.length; i++) {
+                gen.writeFieldName(names[i]);
+                writers[i].write(rs, i + 1, gen);
+            }
+            gen.writeEndObject();
+
+            if (++rows == 1 || rows % FLUSH_EVERY == 0) gen.flush();
+        }
+        gen.writeEndArray();
+        gen.flush();
+        return rows;
+    }
+
+    private static ValueWriter writerFor(ColumnTypes.Column column) {
+        String className = column.className() == null ? "" : column.className();
+        return switch (className) {
+            case "java.lang.Long", "java.lang.Integer" -> (rs, i, gen) -> {
+                long value = rs.getLong(i);
+                if (rs.wasNull()) gen.writeNull();
+                else gen.writeNumber(value);
+            };
+            case "java.lang.Boolean" -> (rs, i, gen) -> {
+                boolean value = rs.getBoolean(i);
+                if (rs.wasNull()) gen.writeNull();
+                else gen.writeBoolean(value);
+            };
+            case "java.lang.Double", "java.lang.Float" -> (rs, i, gen) -> {
+                double value = rs.getDouble(i);
+                if (rs.wasNull()) gen.writeNull();
+                else gen.writeNumber(value);
+            };
+            case "java.math.BigDecimal", "java.math.BigInteger" -> (rs, i, gen) -> {
+                BigDecimal value = rs.getBigDecimal(i);
+                if (value == null) gen.writeNull();
+                else gen.writeNumber(value);
+            };
+            case "java.time.LocalDateTime", "java.sql.Timestamp" -> (rs, i, gen) -> {
+                LocalDateTime value = rs.getObject(i, LocalDateTime.class);
+                if (value == null) gen.writeNull();
+                else gen.writeString(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(value));
+            };
+            case "java.time.LocalDate", "java.sql.Date" -> (rs, i, gen) -> {
+                LocalDate value = rs.getObject(i, LocalDate.class);
+                if (value == null) gen.writeNull();
+                else gen.writeString(DateTimeFormatter.ISO_LOCAL_DATE.format(value));
+            };
+            case "[B" -> (rs, i, gen) -> {
+                byte[] value = rs.getBytes(i);
+                if (value == null) gen.writeNull();
+                else gen.writeBinary(value); // base64
+            };
+            default -> (rs, i, gen) -> {
+                String value = rs.getString(i);
+                if (value == null) gen.writeNull();
+                else gen.writeString(value);
+            };
+        };
+    }
+}
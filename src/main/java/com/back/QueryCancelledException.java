@@ -0,0 +1,12 @@
+package com.back;
+
+// Sql.cancel() 또는 QueryContext.cancel()로 중단된 쿼리
+public class QueryCancelledException extends RuntimeException {
+    public QueryCancelledException(String message) {
+        super(message);
+    }
+
+    public QueryCancelledException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,78 @@
+package com.back;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+요청 하나에 걸린 시간 예산(deadline)과 취소 상태
+
+같은 QueryContext를 여러 Sql에 넘기면 앞의 쿼리가 쓴 시간만큼 뒤의 쿼리가 쓸 수 있는 시간이 줄어든다
+cancel()을 호출하면 이 컨텍스트로 실행 중인 모든 쿼리를 Statement.cancel()로 중단한다
+(MySQL 드라이버는 별도 커넥션으로 KILL QUERY를 보내므로 원래 커넥션은 계속 쓸 수 있다)
+
+사용 예)
+QueryContext ctx = QueryContext.withTimeout(Duration.ofMillis(300));
+simpleDb.genSql().context(ctx).append(...).selectRows();
+simpleDb.genSql().context(ctx).append(...).selectLong(); // 남은 시간만 사용
+ */
+public class QueryContext {
+    private final long deadlineNanos; // System.nanoTime 기준, Long.MAX_VALUE면 제한 없음
+    private final Set<Statement> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled = false;
+
+    private QueryContext(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static QueryContext withTimeout(Duration budget) {
+        return new QueryContext(System.nanoTime() + budget.toNanos());
+    }
+
+    // 시간 제한 없이 취소만 필요한 경우
+    public static QueryContext cancellable() {
+        return new QueryContext(Long.MAX_VALUE);
+    }
+
+    public boolean hasDeadline() {
+        return deadlineNanos != Long.MAX_VALUE;
+    }
+
+    // 남은 시간, 이미 지났으면 0 이하
+    public Duration remaining() {
+        if (!hasDeadline()) return Duration.ofNanos(Long.MAX_VALUE);
+        return Duration.ofNanos(deadlineNanos - System.nanoTime());
+    }
+
+    public boolean isExpired() {
+        return hasDeadline() && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        for (Statement statement : running) {
+            try {
+                statement.cancel();
+            } catch (SQLException ignore) {}
+        }
+    }
+
+    void register(Statement statement) {
+        running.add(statement);
+        if (cancelled) { // 등록 직전에 취소된 경우
+            try {
+                statement.cancel();
+            } catch (SQLException ignore) {}
+        }
+    }
+
+    void unregister(Statement statement) {
+        running.remove(statement);
+    }
+}
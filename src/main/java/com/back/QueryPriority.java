@@ -0,0 +1,12 @@
+package com.back;
+
+/*
+동시 실행 한도가 찼을 때 대기열에서 먼저 실행되는 순서 (위에 있을수록 먼저)
+
+기본값: INSERT/UPDATE/DELETE -> WRITE, 일반 조회 -> INTERACTIVE, selectRowBuffer/aggregate -> BATCH
+ */
+public enum QueryPriority {
+    WRITE,
+    INTERACTIVE,
+    BATCH
+}
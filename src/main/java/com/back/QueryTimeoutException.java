@@ -0,0 +1,12 @@
+package com.back;
+
+// 쿼리 타임아웃 또는 QueryContext의 시간 예산 초과
+public class QueryTimeoutException extends RuntimeException {
+    public QueryTimeoutException(String message) {
+        super(message);
+    }
+
+    public QueryTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
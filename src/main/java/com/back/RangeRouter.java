@@ -0,0 +1,35 @@
+package com.back;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+범위 라우터: 숫자 샤드 키를 구간별로 샤드에 배정한다
+
+예) new RangeRouter().range(0, 0).range(1_000_000, 1).range(2_000_000, 2)
+    -> id 0 ~ 999,999는 0번, 1,000,000 ~ 1,999,999는 1번, 그 이상은 2번 샤드
+ */
+public class RangeRouter implements ShardRouter {
+    private final TreeMap<Long, Integer> ranges = new TreeMap<>(); // 구간 시작값 -> 샤드
+
+    // from 이상인 키는 (다음 구간 전까지) shard로 보낸다
+    public RangeRouter range(long from, int shard) {
+        ranges.put(from, shard);
+        return this;
+    }
+
+    @Override
+    public int shardFor(Object shardKey) {
+        if (!(shardKey instanceof Number n))
+            throw new IllegalArgumentException("범위 라우팅은 숫자 키만 지원합니다: " + shardKey);
+
+        Map.Entry<Long, Integer> entry = ranges.floorEntry(n.longValue());
+        if (entry == null) throw new IllegalArgumentException("어느 구간에도 속하지 않는 키: " + shardKey);
+        return entry.getValue();
+    }
+
+    @Override
+    public int shardCount() {
+        return ranges.values().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1;
+    }
+}
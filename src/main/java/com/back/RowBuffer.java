@@ -0,0 +1,494 @@
+package com.back;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/*
+조회 결과를 Map 대신 바이너리로 인코딩해서 담아두는 버퍼
+
+- 행은 [타입 태그 1byte + 값] 의 나열로 인코딩되어 ByteBuffer 하나에 쌓인다 (행/값마다 객체를 만들지 않는다)
+  direct 버퍼는 close() 해도 GC가 돌아야 풀리고 -XX:MaxDirectMemorySize 한도를 나눠 쓰므로 힙 버퍼를 쓴다
+- 메모리 한도(memoryLimit)를 넘으면 지금까지의 내용을 임시 파일로 옮기고 이후 행은 파일에 이어 쓴다 (spill)
+- 행마다 시작 위치를 기록해 두므로 get(i)로 임의 접근, iterator()로 여러 번 순회할 수 있다
+
+다 쓰면 close()로 임시 파일을 지워야 한다 (close() 후에 읽으면 IllegalStateException)
+ */
+public class RowBuffer implements AutoCloseable, Iterable<RowBuffer.Row> {
+    public static final long DEFAULT_MEMORY_LIMIT = 64L * 1024 * 1024;
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int WRITE_CHUNK = 64 * 1024;
+
+    // 값 타입 태그
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte STRING = 3;
+    private static final byte DATETIME = 4;
+    private static final byte DATE = 5;
+    private static final byte BOOLEAN = 6;
+    private static final byte BYTES = 7;
+    private static final byte DECIMAL = 8;
+
+    private final String[] columns;
+    private final byte[] types;
+    private final long memoryLimit;
+
+    private ByteBuffer memory;               // 스필 전: 전체 데이터, 스필 후: 파일 쓰기 버퍼
+    private ByteBuffer scratch = ByteBuffer.allocate(1024); // 한 행 인코딩용
+    private long[] offsets = new long[1024]; // offsets[i] = i번째 행의 시작 위치, offsets[size] = 끝
+    private int size = 0;
+    private long written = 0;
+
+    private Path spillFile;
+    private FileChannel channel;
+    private boolean closed = false;
+
+    private RowBuffer(String[] columns, byte[] types, long memoryLimit) {
+        this.columns = columns;
+        this.types = types;
+        this.memoryLimit = Math.min(memoryLimit, Integer.MAX_VALUE);
+        this.memory = ByteBuffer.allocate((int) Math.min(INITIAL_CAPACITY, this.memoryLimit));
+    }
+
+    static RowBuffer from(ResultSet rs, long memoryLimit) throws SQLException, IOException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columnCount = meta.getColumnCount();
+        String[] columns = new String[columnCount];
+        byte[] types = new byte[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = meta.getColumnLabel(i + 1);
+            types[i] = typeOf(meta, i + 1); // 컬럼 타입은 한 번만 결정
+        }
+
+        RowBuffer buffer = new RowBuffer(columns, types, memoryLimit);
+        try {
+            while (rs.next()) buffer.append(rs);
+            buffer.finish();
+            return buffer;
+        } catch (SQLException | IOException | RuntimeException e) {
+            buffer.close();
+            throw e;
+        }
+    }
+
+    private static byte typeOf(ResultSetMetaData meta, int column) throws SQLException {
+        return switch (meta.getColumnType(column)) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> LONG;
+            // BIGINT UNSIGNED는 long 범위를 넘을 수 있다
+            case Types.BIGINT -> meta.isSigned(column) ? LONG : DECIMAL;
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> DOUBLE;
+            case Types.DECIMAL, Types.NUMERIC -> DECIMAL;
+            case Types.BIT, Types.BOOLEAN -> meta.getPrecision(column) <= 1 ? BOOLEAN : BYTES;
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> DATETIME;
+            case Types.DATE -> DATE;
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> BYTES;
+            default -> STRING;
+        };
+    }
+
+    // ====쓰기====
+
+    private void append(ResultSet rs) throws SQLException, IOException {
+        scratch.clear();
+        for (int i = 0; i < types.length; i++) {
+            encode(rs, i + 1, types[i]);
+        }
+        scratch.flip();
+
+        if (size + 1 >= offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        offsets[size++] = written;
+        write(scratch);
+        offsets[size] = written;
+    }
+
+    private void encode(ResultSet rs, int column, byte type) throws SQLException {
+        switch (type) {
+            case LONG -> {
+                long value = rs.getLong(column);
+                if (rs.wasNull()) putNull();
+                else ensure(9).put(LONG).putLong(value);
+            }
+            case DOUBLE -> {
+                double value = rs.getDouble(column);
+                if (rs.wasNull()) putNull();
+                else ensure(9).put(DOUBLE).putDouble(value);
+            }
+            case BOOLEAN -> {
+                boolean value = rs.getBoolean(column);
+                if (rs.wasNull()) putNull();
+                else ensure(2).put(BOOLEAN).put((byte) (value ? 1 : 0));
+            }
+            case DATETIME -> {
+                LocalDateTime value = rs.getObject(column, LocalDateTime.class);
+                if (value == null) putNull();
+                else ensure(13).put(DATETIME).putLong(value.toEpochSecond(ZoneOffset.UTC)).putInt(value.getNano());
+            }
+            case DATE -> {
+                LocalDate value = rs.getObject(column, LocalDate.class);
+                if (value == null) putNull();
+                else ensure(9).put(DATE).putLong(value.toEpochDay());
+            }
+            case BYTES -> putBytes(BYTES, rs.getBytes(column));
+            case DECIMAL -> {
+                String value = rs.getString(column);
+                putBytes(DECIMAL, value == null ? null : value.getBytes(StandardCharsets.US_ASCII));
+            }
+            default -> {
+                String value = rs.getString(column);
+                putBytes(STRING, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private void putNull() {
+        ensure(1).put(NULL);
+    }
+
+    private void putBytes(byte type, byte[] value) {
+        if (value == null) {
+            putNull();
+            return;
+        }
+        ensure(5 + value.length).put(type).putInt(value.length).put(value);
+    }
+
+    private ByteBuffer ensure(int bytes) {
+        if (scratch.remaining() < bytes) {
+            int capacity = Math.max(scratch.capacity() * 2, scratch.position() + bytes);
+            ByteBuffer bigger = ByteBuffer.allocate(capacity);
+            scratch.flip();
+            bigger.put(scratch);
+            scratch = bigger;
+        }
+        return scratch;
+    }
+
+    private void write(ByteBuffer row) throws IOException {
+        int length = row.remaining();
+        written += length;
+
+        if (channel == null) {
+            if (memory.remaining() < length) growOrSpill(length);
+            if (channel == null) {
+                memory.put(row);
+                return;
+            }
+        }
+
+        // 스필 이후: memory를 쓰기 버퍼로 사용
+        if (memory.remaining() < length) flush();
+        if (memory.remaining() < length) {
+            writeFully(row); // 버퍼보다 큰 행은 바로 파일로
+            return;
+        }
+        memory.put(row);
+    }
+
+    // 한도 안에서 두 배씩 키우고, 그래도 모자라면 임시 파일로 옮긴다
+    private void growOrSpill(int length) throws IOException {
+        long needed = (long) memory.position() + length;
+        if (needed <= memoryLimit) {
+            long capacity = Math.max((long) memory.capacity() * 2, needed);
+            ByteBuffer bigger = ByteBuffer.allocate((int) Math.min(capacity, memoryLimit));
+            memory.flip();
+            bigger.put(memory);
+            memory = bigger;
+            return;
+        }
+
+        spillFile = Files.createTempFile("simpledb-rows-", ".bin");
+        channel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        flush();
+    }
+
+    private void flush() throws IOException {
+        memory.flip();
+        writeFully(memory);
+        memory.clear();
+    }
+
+    // 힙 버퍼를 한 번에 넘기면 JDK가 같은 크기의 임시 direct 버퍼를 만들어 스레드마다 캐시하므로 나눠서 쓴다
+    private void writeFully(ByteBuffer data) throws IOException {
+        int end = data.limit();
+        while (data.hasRemaining()) {
+            data.limit(Math.min(end, data.position() + WRITE_CHUNK));
+            while (data.hasRemaining()) channel.write(data);
+            data.limit(end);
+        }
+    }
+
+    private void finish() throws IOException {
+        scratch = null;
+        if (channel != null) {
+            flush();
+            memory = null; // 스필 후에는 파일에서 읽는다
+        }
+    }
+
+    // ====읽기====
+
+    public int size() {
+        ensureOpen();
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public List<String> columns() {
+        return List.of(columns);
+    }
+
+    public boolean isSpilled() {
+        return channel != null;
+    }
+
+    // 스필했으면 임시 파일 경로 (close() 하면 삭제된다), 아니면 null
+    public Path getSpillFile() {
+        return spillFile;
+    }
+
+    // 인코딩된 전체 크기 (byte)
+    public long byteSize() {
+        return written;
+    }
+
+    public Row get(int index) {
+        ensureOpen();
+        Objects.checkIndex(index, size);
+        long start = offsets[index];
+        int length = (int) (offsets[index + 1] - start);
+
+        if (channel == null) {
+            return new Row(memory.slice((int) start, length));
+        }
+
+        ByteBuffer data = ByteBuffer.allocate(length);
+        try {
+            while (data.hasRemaining()) {
+                int read = channel.read(data, start + data.position());
+                if (read < 0) throw new IOException("스필 파일이 예상보다 짧습니다: " + spillFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Row(data.flip());
+    }
+
+    @Override
+    public Iterator<Row> iterator() {
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Row next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return get(next++);
+            }
+        };
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("이미 닫힌 RowBuffer입니다");
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        memory = null;
+        if (channel == null) return;
+        try {
+            channel.close(); // DELETE_ON_CLOSE로 임시 파일도 삭제된다
+        } catch (IOException ignore) {}
+    }
+
+    private int columnIndex(String label) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(label)) return i + 1;
+        }
+        throw new IllegalArgumentException("존재하지 않는 컬럼: " + label);
+    }
+
+    /*
+    한 행에 대한 타입별 읽기 도구
+    컬럼 번호는 ResultSet과 같이 1부터 시작한다
+     */
+    public class Row {
+        private final ByteBuffer data;
+        private final int[] positions; // 컬럼별 태그 위치
+
+        private Row(ByteBuffer data) {
+            this.data = data;
+            this.positions = new int[types.length];
+            int position = 0;
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = position;
+                position += 1 + switch (data.get(position)) {
+                    case NULL -> 0;
+                    case BOOLEAN -> 1;
+                    case LONG, DOUBLE, DATE -> 8;
+                    case DATETIME -> 12;
+                    default -> 4 + data.getInt(position + 1); // 길이 + 바이트
+                };
+            }
+        }
+
+        private int at(int column) {
+            return positions[column - 1];
+        }
+
+        private byte tag(int column) {
+            return data.get(at(column));
+        }
+
+        public boolean isNull(int column) {
+            return tag(column) == NULL;
+        }
+
+        public boolean isNull(String label) {
+            return isNull(columnIndex(label));
+        }
+
+        // NULL이면 0 (ResultSet.getLong과 동일)
+        public long getLong(int column) {
+            int at = at(column);
+            return switch (data.get(at)) {
+                case NULL -> 0;
+                case LONG -> data.getLong(at + 1);
+                case DOUBLE -> (long) data.getDouble(at + 1);
+                case BOOLEAN -> data.get(at + 1);
+                case DECIMAL -> new BigDecimal(getString(column)).longValue();
+                default -> Long.parseLong(getString(column));
+            };
+        }
+
+        public long getLong(String label) {
+            return getLong(columnIndex(label));
+        }
+
+        public double getDouble(int column) {
+            int at = at(column);
+            return switch (data.get(at)) {
+                case NULL -> 0;
+                case DOUBLE -> data.getDouble(at + 1);
+                case LONG -> data.getLong(at + 1);
+                case BOOLEAN -> data.get(at + 1);
+                default -> Double.parseDouble(getString(column));
+            };
+        }
+
+        public double getDouble(String label) {
+            return getDouble(columnIndex(label));
+        }
+
+        public boolean getBoolean(int column) {
+            int at = at(column);
+            return switch (data.get(at)) {
+                case NULL -> false;
+                case BOOLEAN -> data.get(at + 1) != 0;
+                case LONG -> data.getLong(at + 1) != 0;
+                default -> Boolean.parseBoolean(getString(column));
+            };
+        }
+
+        public boolean getBoolean(String label) {
+            return getBoolean(columnIndex(label));
+        }
+
+        public String getString(int column) {
+            int at = at(column);
+            byte tag = data.get(at);
+            return switch (tag) {
+                case NULL -> null;
+                case STRING -> new String(bytes(at), StandardCharsets.UTF_8);
+                case DECIMAL -> new String(bytes(at), StandardCharsets.US_ASCII);
+                case BYTES -> new String(bytes(at), StandardCharsets.UTF_8);
+                default -> String.valueOf(getObject(column));
+            };
+        }
+
+        public String getString(String label) {
+            return getString(columnIndex(label));
+        }
+
+        public LocalDateTime getDateTime(int column) {
+            int at = at(column);
+            return switch (data.get(at)) {
+                case NULL -> null;
+                case DATETIME -> LocalDateTime.ofEpochSecond(data.getLong(at + 1), data.getInt(at + 9), ZoneOffset.UTC);
+                case DATE -> LocalDate.ofEpochDay(data.getLong(at + 1)).atStartOfDay();
+                default -> LocalDateTime.parse(getString(column));
+            };
+        }
+
+        public LocalDateTime getDateTime(String label) {
+            return getDateTime(columnIndex(label));
+        }
+
+        public BigDecimal getBigDecimal(int column) {
+            String value = getString(column);
+            return value == null ? null : new BigDecimal(value);
+        }
+
+        public BigDecimal getBigDecimal(String label) {
+            return getBigDecimal(columnIndex(label));
+        }
+
+        public byte[] getBytes(int column) {
+            int at = at(column);
+            return data.get(at) == NULL ? null : bytes(at);
+        }
+
+        public byte[] getBytes(String label) {
+            return getBytes(columnIndex(label));
+        }
+
+        // 타입 태그에 맞는 자바 객체로 변환 (selectRows()의 값과 비슷한 타입)
+        public Object getObject(int column) {
+            int at = at(column);
+            return switch (data.get(at)) {
+                case NULL -> null;
+                case LONG -> data.getLong(at + 1);
+                case DOUBLE -> data.getDouble(at + 1);
+                case BOOLEAN -> data.get(at + 1) != 0;
+                case DATETIME, DATE -> getDateTime(column);
+                case DECIMAL -> getBigDecimal(column);
+                case BYTES -> bytes(at);
+                default -> getString(column);
+            };
+        }
+
+        public Object getObject(String label) {
+            return getObject(columnIndex(label));
+        }
+
+        private byte[] bytes(int at) {
+            byte[] value = new byte[data.getInt(at + 1)];
+            data.get(at + 5, value);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.back;
+
+/*
+샤드 키(예: article id)를 몇 번째 샤드로 보낼지 결정한다
+ */
+public interface ShardRouter {
+    int shardFor(Object shardKey);
+
+    int shardCount();
+}
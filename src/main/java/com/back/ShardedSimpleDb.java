@@ -0,0 +1,149 @@
+package com.back;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/*
+여러 MySQL 인스턴스(샤드)에 나눠 담긴 테이블을 하나처럼 쓰기 위한 SimpleDb 묶음
+
+- 샤드 키가 있는 문장: genSql(shardKey)로 키가 속한 샤드 하나에서만 실행
+- 샤드 키가 없는 조회: scatterGather()로 모든 샤드에 동시에 보내고 결과를 정렬 순서대로 합친 뒤 limit 적용
+- INSERT: 샤드마다 AUTO_INCREMENT가 따로 증가하므로 nextId()로 id를 먼저 만들고 그 id로 라우팅
+
+사용 예)
+long id = shardedDb.nextId();
+shardedDb.genSql(id).append("INSERT INTO article SET id = ?, title = ?", id, "제목").insert();
+ */
+public class ShardedSimpleDb {
+    private final List<SimpleDb> shards;
+    private final ShardRouter router;
+    private final SnowflakeIdGenerator idGenerator;
+
+    public ShardedSimpleDb(List<SimpleDb> shards, ShardRouter router, SnowflakeIdGenerator idGenerator) {
+        if (shards.isEmpty()) throw new IllegalArgumentException("샤드가 없습니다");
+        if (router.shardCount() != shards.size())
+            throw new IllegalArgumentException("라우터의 샤드 수(" + router.shardCount() + ")와 SimpleDb 수(" + shards.size() + ")가 다릅니다");
+        this.shards = List.copyOf(shards);
+        this.router = router;
+        this.idGenerator = idGenerator;
+    }
+
+    // 모든 샤드가 같은 계정/스키마를 쓰고 호스트만 다른 경우 (consistent hashing)
+    public static ShardedSimpleDb of(List<String> hosts, String user, String password, String dbName, long nodeId) {
+        List<SimpleDb> shards = new ArrayList<>();
+        for (String host : hosts) shards.add(new SimpleDb(host, user, password, dbName));
+        return new ShardedSimpleDb(shards, new ConsistentHashRouter(shards.size()), new SnowflakeIdGenerator(nodeId));
+    }
+
+    public void setDevMode(boolean mode) {
+        for (SimpleDb shard : shards) shard.setDevMode(mode);
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    // 샤드 키가 속한 샤드 (샤드 단위 트랜잭션은 여기서 시작한다)
+    public SimpleDb shard(Object shardKey) {
+        return shards.get(router.shardFor(shardKey));
+    }
+
+    public SimpleDb shardAt(int index) {
+        return shards.get(index);
+    }
+
+    public long nextId() {
+        return idGenerator.nextId();
+    }
+
+    // 샤드 키가 있는 문장은 해당 샤드 하나로만 보낸다
+    public Sql genSql(Object shardKey) {
+        return shard(shardKey).genSql();
+    }
+
+    public void run(Object shardKey, String sql, Object... values) {
+        shard(shardKey).run(sql, values);
+    }
+
+    // DDL 등 모든 샤드에 같은 문장을 실행
+    public void runAll(String sql, Object... values) {
+        scatter(simpleDb -> {
+            simpleDb.run(sql, values);
+            return null;
+        });
+    }
+
+    /*
+    모든 샤드에 같은 조회를 동시에 실행하고 합친다
+
+    query: 샤드별로 실행할 조회 (각 샤드에서도 ORDER BY / LIMIT를 걸어야 전송량이 줄어든다)
+    order: query의 ORDER BY와 같은 순서, null이면 샤드 순서대로 이어 붙인다
+    limit: 합친 결과의 최대 개수, 0 이하면 제한 없음
+
+    예) scatterGather(sql -> sql.append("SELECT * FROM article ORDER BY id DESC LIMIT 10").selectRows(Article.class),
+                      Comparator.comparing(Article::getId).reversed(), 10)
+     */
+    public <T> List<T> scatterGather(Function<Sql, List<T>> query, Comparator<? super T> order, int limit) {
+        List<List<T>> results = scatter(simpleDb -> query.apply(simpleDb.genSql()));
+        return order == null ? concat(results, limit) : mergeSorted(results, order, limit);
+    }
+
+    public List<Map<String, Object>> selectRows(Comparator<Map<String, Object>> order, int limit,
+                                                String sql, Object... values) {
+        return scatterGather(s -> s.append(sql, values).selectRows(), order, limit);
+    }
+
+    // 트랜잭션 커넥션 종료
+    public void close() {
+        for (SimpleDb shard : shards) shard.close();
+    }
+
+    private <R> List<R> scatter(Function<SimpleDb, R> task) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<R>> futures = new ArrayList<>();
+            for (SimpleDb shard : shards) {
+                futures.add(executor.submit(() -> task.apply(shard)));
+            }
+
+            List<R> results = new ArrayList<>();
+            for (Future<R> future : futures) results.add(future.get());
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("샤드 조회 중 인터럽트", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static <T> List<T> concat(List<List<T>> results, int limit) {
+        List<T> merged = new ArrayList<>();
+        for (List<T> result : results) merged.addAll(result);
+        return limit > 0 && merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    // 샤드별로 이미 정렬된 결과를 k-way merge (전체를 다시 정렬하지 않는다)
+    private static <T> List<T> mergeSorted(List<List<T>> results, Comparator<? super T> order, int limit) {
+        record Head<T>(T value, Iterator<T> rest) {
+        }
+
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>((a, b) -> order.compare(a.value(), b.value()));
+        for (List<T> result : results) {
+            Iterator<T> it = result.iterator();
+            if (it.hasNext()) heads.add(new Head<>(it.next(), it));
+        }
+
+        List<T> merged = new ArrayList<>();
+        while (!heads.isEmpty() && (limit <= 0 || merged.size() < limit)) {
+            Head<T> head = heads.poll();
+            merged.add(head.value());
+            if (head.rest().hasNext()) heads.add(new Head<>(head.rest().next(), head.rest()));
+        }
+        return merged;
+    }
+}
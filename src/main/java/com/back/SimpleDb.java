@@ -3,6 +3,24 @@ package com.back;
 
 
 import java.sql.*;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
 /*
 
@@ -18,6 +36,9 @@ public class SimpleDb {
     private final String password;
     private boolean mode;
 
+    // selectRowBuffer()가 힙 밖 메모리에 담아둘 수 있는 최대 크기, 넘으면 임시 파일로 스필
+    private long rowBufferMemoryLimit = RowBuffer.DEFAULT_MEMORY_LIMIT;
+
     /*
     DB와 직접 통신하려면 매번 연결을 새로 해야 한다
     그 과정은 소켓 연결 -> 로그인 인증 -> 세선 생성이므로 매번 새로 연결하려면 시간이 걸린다
@@ -27,30 +48,234 @@ public class SimpleDb {
      */
     private Connection txConnection = null;
 
+    // setPoolSize()를 호출하면 커넥션을 풀에서 빌려 쓰고, 없으면 매번 DriverManager로 연결한다
+    private volatile ConnectionPool pool = null;
+
+    // URL 외에 연결할 때마다 넘길 드라이버 설정 (예: useServerPrepStmts, cachePrepStmts)
+    private final Properties connectionProperties = new Properties();
+
+    // MySQL 프로토콜 압축 (지연 시간이 큰 구간에서 큰 결과를 주고받을 때 전송량을 줄인다)
+    private volatile boolean compression = false;
+
+    /*
+    변경 데이터 캡처(CDC)
+    커밋된 변경만 구독자에게 전달해야 하므로 트랜잭션 중의 변경은 pendingChanges에 모아두었다가
+    commit() 시점에 한 번에 발행하고, rollback() 시 버린다
+
+    SubmissionPublisher는 구독자별로 버퍼가 정해져 있어 구독자가 request(n)으로 요청한 만큼만 전달된다
+    버퍼가 가득 찬 느린 구독자 때문에 쓰기가 멈추지 않도록 submit() 대신 offer()로 넘기고,
+    넘치는 이벤트는 그 구독자에게서만 버린다 (metrics.droppedChanges, 구독자는 sequence가 건너뛴 것으로 알 수 있다)
+
+    sequence는 커밋 순서대로 commitLock 안에서 붙여 changeOutbox에 넣고,
+    구독자에게 넘기는 일은 커밋과 잠금(FOR UPDATE)을 모두 푼 뒤에 한 스레드씩 outbox 순서대로 한다
+     */
+    private static final int CHANGE_BUFFER_SIZE = 256;
+    private final SubmissionPublisher<ChangeEvent> changePublisher =
+            new SubmissionPublisher<>(ForkJoinPool.commonPool(), CHANGE_BUFFER_SIZE);
+    private final ConcurrentLinkedQueue<ChangeEvent> changeOutbox = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock deliverLock = new ReentrantLock(); // outbox를 비우는 스레드는 한 번에 하나
+    private final ChangeCapture changeCapture = new ChangeCapture();
+
+    // SQL 모양별 결과 컬럼 타입/읽는 방법 캐시
+    private final ColumnTypes columnTypes = new ColumnTypes();
+
+    private final BulkLoader bulkLoader = new BulkLoader(this);
+
+    // 쿼리 수 / 타임아웃 / 취소 등 실행 통계
+    private final SimpleDbMetrics metrics = new SimpleDbMetrics();
+
+    // 쿼리마다 timeout()을 지정하지 않았을 때 적용할 타임아웃, null이면 제한 없음
+    private Duration defaultQueryTimeout = null;
+
+    // 트랜잭션 밖의 동일한 조회가 동시에 들어오면 한 번만 실행
+    private final SingleFlight singleFlight = new SingleFlight(metrics);
+    private boolean singleFlightEnabled = false;
+
+    // DB가 느려질 때 호출이 한꺼번에 몰리지 않도록 동시 실행 수를 지연 시간에 맞춰 조절
+    private final ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(metrics);
+    private final List<ChangeEvent> pendingChanges = new ArrayList<>();
+    private final Object commitLock = new Object(); // 커밋과 sequence 부여를 묶어 발행 순서 = 커밋 순서
+    private long changeSequence = 0; // commitLock 안에서만 변경
+
 
     public SimpleDb(String host, String user, String password, String dbName) {
         this.url = "jdbc:mysql://" + host + "/" + dbName + "?serverTimezone=Asia/Seoul";
         this.user = user;
         this.password = password;
-
-
+        metrics.limiter = concurrencyLimiter;
     }
 
     public void setDevMode(boolean mode) {
         this.mode = mode;
     }
 
+    public void setRowBufferMemoryLimit(long bytes) {
+        if (bytes <= 0) throw new IllegalArgumentException("메모리 한도는 0보다 커야 합니다: " + bytes);
+        this.rowBufferMemoryLimit = bytes;
+    }
+
+    public long getRowBufferMemoryLimit() {
+        return rowBufferMemoryLimit;
+    }
+
+    ColumnTypes columnTypes() {
+        return columnTypes;
+    }
+
+    public void setDefaultQueryTimeout(Duration timeout) {
+        this.defaultQueryTimeout = timeout;
+    }
+
+    public Duration getDefaultQueryTimeout() {
+        return defaultQueryTimeout;
+    }
+
+    public SimpleDbMetrics getMetrics() {
+        return metrics;
+    }
+
+    // 모든 조회에 single-flight를 켠다 (기본: 꺼짐, 쿼리별로는 Sql.singleFlight())
+    public void setSingleFlightEnabled(boolean enabled) {
+        this.singleFlightEnabled = enabled;
+    }
+
+    boolean isSingleFlightEnabled() {
+        return singleFlightEnabled;
+    }
+
+    SingleFlight singleFlight() {
+        return singleFlight;
+    }
+
+    public void setConnectionProperty(String name, String value) {
+        connectionProperties.setProperty(name, value);
+    }
+
+    /*
+    이후 새로 여는 커넥션부터 프로토콜 압축을 쓴다 (풀을 쓴다면 setPoolSize 전에 설정)
+    압축/해제에 CPU를 쓰므로 같은 데이터센터 안처럼 지연 시간이 작으면 오히려 느려질 수 있다
+    쿼리마다 다르게 하려면 Sql.compression()
+     */
+    public void setCompression(boolean enabled) {
+        this.compression = enabled;
+        connectionProperties.setProperty("useCompression", String.valueOf(enabled));
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    static Properties compressionProperties(boolean enabled) {
+        Properties properties = new Properties();
+        properties.setProperty("useCompression", String.valueOf(enabled));
+        return properties;
+    }
+
+    // 이후 새로 여는 커넥션부터 실제 전송 바이트를 센다 (SimpleDbMetrics.getBytesSent/Received, Sql.getBytesSent/Received)
+    public void setWireMetricsEnabled(boolean enabled) {
+        if (enabled) connectionProperties.setProperty("socketFactory", CountingSocketFactory.class.getName());
+        else connectionProperties.remove("socketFactory");
+    }
+
+    // 이후 연결부터 최대 maxSize개의 커넥션을 재사용한다 (borrowTimeout: 모두 사용 중일 때 기다릴 시간)
+    public synchronized void setPoolSize(int maxSize, Duration borrowTimeout) {
+        if (pool != null) throw new IllegalStateException("커넥션 풀이 이미 설정되어 있습니다");
+        pool = new ConnectionPool(this::openPhysicalConnection, maxSize, borrowTimeout);
+        metrics.pool = pool;
+    }
+
+    private static final int WARM_UP_QUERIES = 100;
+
+    /*
+    첫 요청이 연결/PREPARE/JIT 비용을 떠안지 않도록 미리 준비한다
+    - 풀을 connections개까지 채우고 커넥션마다 statements를 prepare
+      (풀이 없으면 서버측 문장을 남겨 둘 커넥션이 없으므로 한 번 쓰고 닫는 커넥션에서 prepare만 해 본다)
+    - 드라이버 경로가 미리 컴파일되도록 커넥션에서 직접 가벼운 조회를 몇 번 실행한다
+      (Sql을 거치지 않으므로 쿼리 지표, 동시 실행 한도, single-flight에 섞이지 않는다)
+    걸린 시간은 SimpleDbMetrics.getWarmUpNanos()로 확인
+     */
+    public Duration warmUp(int connections, List<String> statements) {
+        long started = System.nanoTime();
+        try {
+            if (pool != null) pool.fill(connections, statements);
+
+            try (
+                Connection conn = openConnection();
+                PreparedStatement ps = conn.prepareStatement("SELECT 1");
+            ) {
+                if (pool == null) {
+                    for (String sql : statements) ConnectionPool.prepareQuietly(conn, sql);
+                }
+                for (int i = 0; i < WARM_UP_QUERIES; i++) {
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("워밍업 오류: " + e.getMessage(), e);
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+        metrics.warmUpNanos = elapsed.toNanos();
+        return elapsed;
+    }
+
+    // 한도/대기열 설정 변경용, setEnabled(false)면 제한 없이 바로 실행
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    Connection openConnection() throws SQLException {
+        ConnectionPool pool = this.pool;
+        return pool != null ? pool.borrow() : openPhysicalConnection();
+    }
+
+    private Connection openPhysicalConnection() throws SQLException {
+        return openConnection(new Properties());
+    }
+
+    // 특정 용도에만 필요한 드라이버 설정을 더해서 연결 (예: allowLoadLocalInfile), 풀을 거치지 않는다
+    Connection openConnection(Properties extra) throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", user);
+        properties.setProperty("password", password);
+        properties.putAll(connectionProperties);
+        properties.putAll(extra);
+        return DriverManager.getConnection(url, properties);
+    }
+
 
     // SQL 한번 실행
     public void run(String sql, Object ... values) {
-        try (
-            Connection conn = DriverManager.getConnection(url, user, password);
-            PreparedStatement ps = conn.prepareStatement(sql);
-        ) {
-            for (int i = 0; i < values.length; i++) {
-                ps.setObject(i + 1, values[i]);
+        try (Connection conn = openConnection()) {
+            // 구독자가 있을 때만 변경 내용을 캡처한다
+            ChangeCapture.Target target = isCapturingChanges()
+                    ? changeCapture.target(conn, sql, Arrays.asList(values))
+                    : null;
+            boolean insert = target != null && target.type() == ChangeEvent.Type.INSERT;
+            try (
+                PreparedStatement ps = insert
+                        ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                        : conn.prepareStatement(sql);
+            ) {
+                for (int i = 0; i < values.length; i++) {
+                    ps.setObject(i + 1, values[i]);
+                }
+                if (target == null) {
+                    ps.executeUpdate();
+                    return;
+                }
+                beginCapture(conn, false);
+                try {
+                    List<Map<String, Object>> before = changeCapture.before(conn, target);
+                    ps.executeUpdate();
+                    List<Long> keys = insert ? ChangeCapture.generatedKeys(ps) : List.of();
+                    commitCapture(conn, changeCapture.changes(conn, target, before, keys), false);
+                } catch (SQLException | RuntimeException e) {
+                    abortCapture(conn, false);
+                    throw e;
+                }
             }
-            ps.executeUpdate();
         } 
         catch (SQLException e) {
             throw new RuntimeException("SQL 실행 오류: " + e.getMessage(), e);
@@ -63,17 +288,52 @@ public class SimpleDb {
         try {
             if(txConnection != null && !txConnection.isClosed()) {
                 //트랜잭션 중이면 닫지 않도록 autoClose = false
-                return new Sql(txConnection, false);
+                return new Sql(this, txConnection, false);
             }
             else {
-                //트랜잭션 중이 아니라면 단발성으로
-                return new Sql(DriverManager.getConnection(url, user, password), true);
+                //트랜잭션 중이 아니라면 단발성으로, 커넥션은 Sql이 실행될 때 연다
+                return new Sql(this, null, true);
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /*
+    파티션별 Sql(예: id 범위로 나눈 SELECT)을 동시에 집계한 뒤 하나로 합친다
+    각 파티션은 자기 커넥션으로 실행되어야 하므로 트랜잭션 중에 만든 Sql은 사용할 수 없다
+     */
+    public AggregationResult aggregate(Aggregation aggregation, List<Sql> partitions) {
+        for (Sql partition : partitions) {
+            if (partition.isInTransaction())
+                throw new IllegalStateException("트랜잭션 중에는 파티션을 병렬로 집계할 수 없습니다");
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<AggregationResult>> futures = new ArrayList<>();
+            for (Sql partition : partitions) {
+                futures.add(executor.submit(() -> partition.aggregate(aggregation)));
+            }
+
+            AggregationResult merged = aggregation.newResult();
+            for (Future<AggregationResult> future : futures) {
+                merged.merge(future.get());
+            }
+            return merged;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("집계 중 인터럽트", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    // 요청 단위 시간 예산/취소를 공유하는 sql 객체 반환
+    public Sql genSql(QueryContext context) {
+        return genSql().context(context);
+    }
+
     //트랜잭션 커넥션 무조건 종료
     public void close() {
         try {
@@ -81,7 +341,43 @@ public class SimpleDb {
                 txConnection.close();
                 txConnection = null;
             }
-        } catch (SQLException ignore) {}
+        } catch (SQLException ignore) {
+        } finally {
+            clearPendingChanges(); // 커밋하지 않고 닫은 트랜잭션의 변경은 DB에도 남지 않는다
+        }
+    }
+
+    // 애플리케이션 종료 시: 트랜잭션 커넥션과 풀의 커넥션을 모두 닫고 CDC 구독을 끝낸다
+    public void shutdown() {
+        close();
+        ConnectionPool pool = this.pool;
+        if (pool != null) pool.close();
+        deliverChanges();
+        changePublisher.close();
+    }
+
+    // ====대량 적재====
+
+    /*
+    행을 한 건씩 run()으로 INSERT 하지 않고 LOAD DATA LOCAL INFILE로 스트리밍해서 적재한다
+    (LOCAL INFILE이 막혀 있으면 여러 행 INSERT 배치로 대신 적재)
+
+    예) simpleDb.bulkLoad("article", List.of("createdDate", "modifiedDate", "title", "body", "isBlind"), rows)
+        rows의 각 원소는 columns 순서대로의 값 배열
+     */
+    public BulkLoadResult bulkLoad(String table, List<String> columns, Iterator<Object[]> rows) {
+        return bulkLoader.load(table, columns, rows);
+    }
+
+    public BulkLoadResult bulkLoad(String table, List<String> columns, Stream<Object[]> rows) {
+        try (rows) {
+            return bulkLoader.load(table, columns, rows.iterator());
+        }
+    }
+
+    // 탭으로 구분된 파일 (NULL은 \N, 값 안의 \ 탭 줄바꿈은 \로 이스케이프)
+    public BulkLoadResult bulkLoad(String table, List<String> columns, Path tsvFile) {
+        return bulkLoader.load(table, columns, tsvFile);
     }
 
     // ====트랜잭션 처리====
@@ -91,7 +387,7 @@ public class SimpleDb {
         try {
             // txConnection이 없거나 닫혀 있으면 새로 연결 생성
             if (txConnection == null || txConnection.isClosed()) {
-                txConnection = DriverManager.getConnection(url, user, password);
+                txConnection = openConnection();
                 txConnection.setAutoCommit(false); // 트랜잭션 모드로 설정
             }
         } catch (SQLException e) {
@@ -110,16 +406,118 @@ public class SimpleDb {
             }
         } catch (SQLException e) {
             throw new RuntimeException("트랜잭션 롤백 오류: " + e.getMessage(), e);
+        } finally {
+            clearPendingChanges(); // 롤백된(롤백에 실패해도 커밋되지 않은) 변경은 발행하지 않는다
         }
     }
 
     public void commit() {
+        // 커밋이 성공한 뒤에만 트랜잭션 중 모아둔 변경을 발행 (다른 쓰기의 커밋과 순서가 섞이지 않도록 commitLock 안에서 sequence 부여)
+        synchronized (commitLock) {
+            try {
+                if(txConnection != null && !txConnection.isClosed()) { //현재 연결 중이라면 롤백 후 연결을 끊어낸다
+                    txConnection.commit();
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("트랜잭션 커밋 오류: " + e.getMessage(), e);
+            }
+
+            List<ChangeEvent> committed;
+            synchronized (pendingChanges) {
+                committed = new ArrayList<>(pendingChanges);
+                pendingChanges.clear();
+            }
+            enqueueChanges(committed);
+        }
+        deliverChanges();
+    }
+
+    private void clearPendingChanges() {
+        synchronized (pendingChanges) {
+            pendingChanges.clear();
+        }
+    }
+
+    // ====변경 데이터 캡처====
+
+    // 커밋된 변경 스트림 구독
+    public Flow.Publisher<ChangeEvent> changes() {
+        return changePublisher;
+    }
+
+    boolean isCapturingChanges() {
+        return changePublisher.hasSubscribers();
+    }
+
+    ChangeCapture changeCapture() {
+        return changeCapture;
+    }
+
+    /*
+    캡처하는 쓰기의 시작 / 끝
+    자동 커밋 쓰기도 캡처할 때는 짧은 트랜잭션으로 묶는다
+    - before 이미지를 SELECT ... FOR UPDATE로 읽으므로 쓰기가 커밋될 때까지 다른 쓰기가 그 행을 바꾸지 못한다
+    - 커밋과 sequence 부여를 commitLock 안에서 함께 하므로 발행 순서 = 커밋 순서
+    - 구독자에게 넘기는 건 커밋하고 commitLock을 푼 뒤라서 느린 구독자가 쓰기나 행 잠금을 붙잡지 않는다
+    트랜잭션 중이면 commit()까지 보류한다
+     */
+    void beginCapture(Connection conn, boolean inTransaction) throws SQLException {
+        if (!inTransaction) conn.setAutoCommit(false);
+    }
+
+    void commitCapture(Connection conn, List<ChangeEvent> events, boolean inTransaction) throws SQLException {
+        if (inTransaction) {
+            synchronized (pendingChanges) {
+                pendingChanges.addAll(events);
+            }
+            return;
+        }
         try {
-            if(txConnection != null && !txConnection.isClosed()) { //현재 연결 중이라면 롤백 후 연결을 끊어낸다
-                txConnection.commit();
+            synchronized (commitLock) {
+                conn.commit();
+                enqueueChanges(events);
+            }
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        deliverChanges();
+    }
+
+    // 캡처 중 실패: 자동 커밋 쓰기는 묶어 둔 짧은 트랜잭션을 롤백 (트랜잭션 중이면 호출자가 rollback)
+    void abortCapture(Connection conn, boolean inTransaction) {
+        if (inTransaction) return;
+        try {
+            conn.rollback();
+            conn.setAutoCommit(true);
+        } catch (SQLException ignore) {}
+    }
+
+    // commitLock 안에서만 호출
+    private void enqueueChanges(List<ChangeEvent> events) {
+        for (ChangeEvent event : events) {
+            changeOutbox.add(event.withSequence(++changeSequence));
+        }
+    }
+
+    /*
+    outbox에 쌓인 이벤트를 순서대로 구독자에게 넘긴다
+    다른 스레드가 넘기는 중이면 기다리지 않고 돌아가며, 그 스레드가 잠금을 풀기 직전에 들어온 이벤트도
+    잠금을 푼 뒤 outbox를 다시 확인하므로 남지 않는다
+    offer()는 기다리지 않으므로 느린 구독자가 있어도 여기서 멈추지 않는다 (넘치면 그 구독자 몫만 버림)
+     */
+    private void deliverChanges() {
+        while (!changeOutbox.isEmpty() && deliverLock.tryLock()) {
+            try {
+                ChangeEvent event;
+                while ((event = changeOutbox.poll()) != null) {
+                    changePublisher.offer(event, (subscriber, dropped) -> {
+                        metrics.droppedChanges.increment();
+                        return false;
+                    });
+                }
+            } finally {
+                deliverLock.unlock();
             }
-        } catch (SQLException e) {
-            throw new RuntimeException("트랜잭션 커밋 오류: " + e.getMessage(), e);
         }
     }
 }
@@ -0,0 +1,58 @@
+package com.back;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/*
+application.yml에 simple-db.db-name이 있으면 SimpleDb 빈을 만든다
+
+- 풀 / 드라이버 설정 / 기본 타임아웃 / single-flight를 설정 파일 값으로 맞춘다
+- SimpleDbWarmUp: 준비(readiness) 상태가 되기 전에 풀을 채우고 자주 쓰는 문장을 prepare
+- Micrometer가 있으면 SimpleDbMetrics를 simpledb.* 지표로 내보낸다 (Actuator /metrics)
+- 종료 시 shutdown()으로 풀과 트랜잭션 커넥션을 닫는다
+ */
+@AutoConfiguration
+@ConditionalOnProperty(prefix = "simple-db", name = "db-name")
+@EnableConfigurationProperties(SimpleDbProperties.class)
+public class SimpleDbAutoConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean
+    public SimpleDb simpleDb(SimpleDbProperties properties) {
+        SimpleDb simpleDb = new SimpleDb(properties.getHost(), properties.getUser(), properties.getPassword(),
+                properties.getDbName());
+        simpleDb.setDevMode(properties.isDevMode());
+        simpleDb.setDefaultQueryTimeout(properties.getQueryTimeout());
+        simpleDb.setSingleFlightEnabled(properties.isSingleFlight());
+        properties.getConnectionProperties().forEach(simpleDb::setConnectionProperty);
+        simpleDb.setCompression(properties.isCompression());
+        simpleDb.setWireMetricsEnabled(properties.isWireMetrics());
+
+        SimpleDbProperties.Pool pool = properties.getPool();
+        if (pool.getSize() > 0) simpleDb.setPoolSize(pool.getSize(), pool.getBorrowTimeout());
+        return simpleDb;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "simple-db.warm-up", name = "enabled", matchIfMissing = true)
+    public SimpleDbWarmUp simpleDbWarmUp(SimpleDb simpleDb, SimpleDbProperties properties) {
+        SimpleDbProperties.WarmUp warmUp = properties.getWarmUp();
+        int connections = warmUp.getConnections() != null ? warmUp.getConnections() : properties.getPool().getSize();
+        return new SimpleDbWarmUp(simpleDb, connections, warmUp.getStatements());
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterBinder.class)
+    static class MetricsConfiguration {
+        @Bean
+        public SimpleDbMeterBinder simpleDbMeterBinder(SimpleDb simpleDb) {
+            return new SimpleDbMeterBinder(simpleDb.getMetrics());
+        }
+    }
+}
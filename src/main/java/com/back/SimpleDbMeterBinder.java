@@ -0,0 +1,82 @@
+package com.back;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/*
+SimpleDbMetrics를 Micrometer 지표로 내보낸다
+값을 따로 복사해 두지 않고 수집할 때마다 SimpleDbMetrics에서 읽는다
+
+simpledb.queries               실행 수 / 총 실행 시간 (FunctionTimer)
+simpledb.query.errors{type}    failure / timeout / cancellation / rejection
+simpledb.queries.coalesced     같은 조회의 결과를 나눠 받아 실행하지 않은 호출 수
+simpledb.changes.dropped       느린 구독자의 버퍼가 넘쳐 버린 변경 이벤트 수
+simpledb.concurrency.*         limit / inflight / queued
+simpledb.pool.*                active / idle
+simpledb.warmup.duration       마지막 워밍업에 걸린 시간
+simpledb.wire.bytes{direction} sent / received
+ */
+public class SimpleDbMeterBinder implements MeterBinder {
+    private final SimpleDbMetrics metrics;
+
+    public SimpleDbMeterBinder(SimpleDbMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionTimer.builder("simpledb.queries", metrics,
+                        SimpleDbMetrics::getQueries, SimpleDbMetrics::getTotalQueryNanos, TimeUnit.NANOSECONDS)
+                .description("SimpleDb로 실행한 쿼리")
+                .register(registry);
+
+        errors(registry, "failure", SimpleDbMetrics::getFailures);
+        errors(registry, "timeout", SimpleDbMetrics::getTimeouts);
+        errors(registry, "cancellation", SimpleDbMetrics::getCancellations);
+        errors(registry, "rejection", SimpleDbMetrics::getRejections);
+
+        FunctionCounter.builder("simpledb.queries.coalesced", metrics, SimpleDbMetrics::getCoalesced)
+                .description("실행 중인 같은 조회의 결과를 나눠 받은 호출")
+                .register(registry);
+
+        FunctionCounter.builder("simpledb.changes.dropped", metrics, SimpleDbMetrics::getDroppedChanges)
+                .description("구독자 버퍼가 가득 차서 전달하지 못한 변경 이벤트")
+                .register(registry);
+
+        gauge(registry, "simpledb.concurrency.limit", SimpleDbMetrics::getConcurrencyLimit);
+        gauge(registry, "simpledb.concurrency.inflight", SimpleDbMetrics::getInflight);
+        gauge(registry, "simpledb.concurrency.queued", SimpleDbMetrics::getQueued);
+        gauge(registry, "simpledb.pool.active", SimpleDbMetrics::getPoolActive);
+        gauge(registry, "simpledb.pool.idle", SimpleDbMetrics::getPoolIdle);
+
+        wireBytes(registry, "sent", SimpleDbMetrics::getBytesSent);
+        wireBytes(registry, "received", SimpleDbMetrics::getBytesReceived);
+
+        TimeGauge.builder("simpledb.warmup.duration", metrics, TimeUnit.NANOSECONDS, SimpleDbMetrics::getWarmUpNanos)
+                .register(registry);
+    }
+
+    private void errors(MeterRegistry registry, String type, ToDoubleFunction<SimpleDbMetrics> count) {
+        FunctionCounter.builder("simpledb.query.errors", metrics, count)
+                .tag("type", type)
+                .register(registry);
+    }
+
+    private void wireBytes(MeterRegistry registry, String direction, ToDoubleFunction<SimpleDbMetrics> count) {
+        FunctionCounter.builder("simpledb.wire.bytes", metrics, count)
+                .tag("direction", direction)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private void gauge(MeterRegistry registry, String name, ToDoubleFunction<SimpleDbMetrics> value) {
+        Gauge.builder(name, metrics, value).register(registry);
+    }
+}
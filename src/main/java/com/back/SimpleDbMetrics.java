@@ -0,0 +1,102 @@
+package com.back;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+SimpleDb 실행 통계
+여러 스레드에서 동시에 증가시키므로 AtomicLong 대신 경합이 적은 LongAdder를 사용한다
+ */
+public class SimpleDbMetrics {
+    final LongAdder queries = new LongAdder();
+    final LongAdder failures = new LongAdder();
+    final LongAdder timeouts = new LongAdder();
+    final LongAdder cancellations = new LongAdder();
+    final LongAdder queryNanos = new LongAdder();
+    final LongAdder rejections = new LongAdder();
+    final LongAdder coalesced = new LongAdder();
+    final LongAdder droppedChanges = new LongAdder();
+    final LongAdder bytesSent = new LongAdder();
+    final LongAdder bytesReceived = new LongAdder();
+    ConcurrencyLimiter limiter; // SimpleDb가 생성 직후 연결
+    volatile ConnectionPool pool; // 풀을 쓰지 않으면 null
+    volatile long warmUpNanos = 0;
+
+    // 실행한 쿼리 수
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    // 타임아웃/취소를 제외한 SQL 오류 수
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getCancellations() {
+        return cancellations.sum();
+    }
+
+    // 쿼리 실행에 쓴 시간의 합 (ns)
+    public long getTotalQueryNanos() {
+        return queryNanos.sum();
+    }
+
+    // 동시 실행 한도 초과로 실행하지 않고 거절한 쿼리 수
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    // 같은 조회가 이미 실행 중이라 DB에 보내지 않고 그 결과를 나눠 받은 호출 수 (single-flight follower)
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    // 구독자의 버퍼가 가득 차서 그 구독자에게 전달하지 못하고 버린 변경 이벤트 수
+    public long getDroppedChanges() {
+        return droppedChanges.sum();
+    }
+
+    // 현재 동시 실행 한도
+    public int getConcurrencyLimit() {
+        return limiter == null ? 0 : limiter.getLimit();
+    }
+
+    // 지금 DB에서 실행 중인 쿼리 수
+    public int getInflight() {
+        return limiter == null ? 0 : limiter.getInflight();
+    }
+
+    // 실행 자리를 기다리는 쿼리 수
+    public int getQueued() {
+        return limiter == null ? 0 : limiter.getQueued();
+    }
+
+    // 사용 중인 풀 커넥션 수
+    public int getPoolActive() {
+        ConnectionPool pool = this.pool;
+        return pool == null ? 0 : pool.getActive();
+    }
+
+    // 풀에서 쉬고 있는 커넥션 수
+    public int getPoolIdle() {
+        ConnectionPool pool = this.pool;
+        return pool == null ? 0 : pool.getIdle();
+    }
+
+    // DB로 보낸 / DB에서 받은 바이트 (wire metrics를 켠 커넥션만, 압축을 쓰면 압축된 크기)
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    // 마지막 warmUp()에 걸린 시간 (ns)
+    public long getWarmUpNanos() {
+        return warmUpNanos;
+    }
+}
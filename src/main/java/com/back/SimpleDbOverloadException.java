@@ -0,0 +1,8 @@
+package com.back;
+
+// 동시 실행 한도를 넘어 대기열이 가득 찼거나 대기 시간이 초과되어 실행하지 않고 거절된 쿼리
+public class SimpleDbOverloadException extends RuntimeException {
+    public SimpleDbOverloadException(String message) {
+        super(message);
+    }
+}
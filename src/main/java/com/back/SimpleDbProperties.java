@@ -0,0 +1,63 @@
+package com.back;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+application.yml의 simple-db 설정
+
+simple-db:
+  host: localhost
+  db-name: simpleDb__test
+  pool:
+    size: 10
+  warm-up:
+    statements:
+      - SELECT * FROM article WHERE id = ?
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "simple-db")
+public class SimpleDbProperties {
+    private String host = "localhost";
+    private String user = "root";
+    private String password = "";
+    private String dbName; // 없으면 SimpleDb 빈을 만들지 않는다
+    private boolean devMode = false;
+    private Duration queryTimeout; // 없으면 제한 없음
+    private boolean singleFlight = false; // 같은 조회를 동시에 한 번만 실행 (Sql.singleFlight()로 쿼리별로도 켤 수 있다)
+    private boolean compression = false; // MySQL 프로토콜 압축
+    private boolean wireMetrics = false; // 실제 전송 바이트 집계
+
+    // 서버측 PreparedStatement를 커넥션마다 캐시해야 warm-up에서 prepare 한 문장이 다시 쓰인다
+    private Map<String, String> connectionProperties = new LinkedHashMap<>(Map.of(
+            "useServerPrepStmts", "true",
+            "cachePrepStmts", "true",
+            "prepStmtCacheSize", "250"
+    ));
+
+    private final Pool pool = new Pool();
+    private final WarmUp warmUp = new WarmUp();
+
+    @Getter
+    @Setter
+    public static class Pool {
+        private int size = 10; // 0이면 풀 없이 매번 연결
+        private Duration borrowTimeout = Duration.ofSeconds(5);
+    }
+
+    @Getter
+    @Setter
+    public static class WarmUp {
+        private boolean enabled = true;
+        private Integer connections; // 없으면 pool.size만큼
+        private List<String> statements = new ArrayList<>();
+    }
+}
@@ -0,0 +1,48 @@
+package com.back;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/*
+SimpleDb 워밍업
+
+- 빈이 만들어지는 즉시 가상 스레드에서 시작해 나머지 빈 초기화와 동시에 진행한다 (시작 시간을 늘리지 않도록)
+- ApplicationRunner는 readiness가 ACCEPTING_TRAFFIC이 되기 전에 실행되므로 여기서 끝날 때까지 기다린다
+  -> 트래픽을 받기 시작할 때는 풀이 차 있고 자주 쓰는 문장이 이미 prepare 되어 있다
+- DB에 연결할 수 없으면 애플리케이션 시작이 실패한다 (준비되지 않은 채로 트래픽을 받지 않도록)
+ */
+public class SimpleDbWarmUp implements ApplicationRunner {
+    private final CompletableFuture<Duration> warmUp;
+
+    public SimpleDbWarmUp(SimpleDb simpleDb, int connections, List<String> statements) {
+        List<String> hotStatements = List.copyOf(statements);
+        this.warmUp = new CompletableFuture<>();
+        Thread.ofVirtual().name("simpledb-warm-up").start(() -> {
+            try {
+                warmUp.complete(simpleDb.warmUp(connections, hotStatements));
+            } catch (Throwable e) {
+                warmUp.completeExceptionally(e);
+            }
+        });
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            warmUp.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    // 워밍업이 끝났으면 걸린 시간, 아직이면 null
+    public Duration getElapsed() {
+        return warmUp.isDone() && !warmUp.isCompletedExceptionally() ? warmUp.join() : null;
+    }
+}
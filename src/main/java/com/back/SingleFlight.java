@@ -0,0 +1,123 @@
+package com.back;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/*
+같은 조회가 동시에 여러 번 들어올 때 DB에는 한 번만 보내는 장치 (single-flight)
+
+- 먼저 온 호출(leader)이 실제로 조회하고, 그동안 같은 키로 들어온 호출(follower)은 leader의 결과를 기다린다
+- leader는 원본을 그대로 가져가고, follower가 있으면 공유용 스냅샷을 한 번 복사해 두고 follower는 그 스냅샷을 다시 복사해 간다
+  -> 누가 결과를 수정해도 다른 호출자의 결과에 영향이 없다
+- 조회가 끝나면 키를 지우므로 결과를 캐싱하지는 않는다 (끝난 뒤에 온 호출은 새로 조회)
+- follower는 leader의 문장이 아직 DB로 가지 않았거나 자기가 호출한 뒤에 간 경우에만 합류한다
+  -> 호출하기 전에 커밋된 쓰기는 항상 결과에 보인다 (이미 실행 중인 조회에 붙어 옛 값을 받지 않는다)
+  그렇지 않으면 새 leader가 되어 직접 조회하고, 이후에 온 호출은 새 leader에 합류한다
+- follower는 자기 시간 예산과 취소 상태로 기다린다 (leader가 기다리는 쪽의 cancel()을 막지 않는다)
+- leader가 자기 시간 예산/취소 때문에 실패했으면 follower와는 무관한 실패이므로 follower가 직접 조회한다
+ */
+final class SingleFlight {
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10); // 기다리는 동안 취소를 확인하는 간격
+
+    private final Map<Key, Flight> inFlight = new ConcurrentHashMap<>();
+    private final SimpleDbMetrics metrics;
+
+    SingleFlight(SimpleDbMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    record Key(String kind, String sql, List<Object> params) {
+    }
+
+    private static final class Flight {
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        int followers = 0; // compute() 안에서만 변경
+        volatile long executedNanos = Long.MAX_VALUE; // leader의 문장을 DB로 보낸 시각, 보내기 전이면 MAX
+
+        // 이 시각에 호출한 쪽이 합류해도 되는지 (그 뒤에 DB로 보낸 문장인지)
+        boolean joinableFrom(long arrivedNanos) {
+            return executedNanos == Long.MAX_VALUE || executedNanos - arrivedNanos >= 0;
+        }
+    }
+
+    /*
+    query: 조회, 인자로 받은 Runnable은 문장을 DB로 보내기 직전에 호출한다
+    timeoutNanos: follower가 leader의 결과를 기다릴 최대 시간 (Long.MAX_VALUE면 제한 없음)
+    cancelled: 이 호출이 취소되었는지 (기다리는 동안 주기적으로 확인)
+     */
+    @SuppressWarnings("unchecked")
+    <T> T execute(Key key, Function<Runnable, T> query, UnaryOperator<T> copy, long timeoutNanos,
+                  BooleanSupplier cancelled) {
+        long arrivedNanos = System.nanoTime();
+        Flight mine = new Flight();
+        // compute는 키 단위로 원자적이라 leader의 remove와 follower 등록이 엇갈리지 않는다
+        Flight flight = inFlight.compute(key, (k, existing) -> {
+            if (existing == null || !existing.joinableFrom(arrivedNanos)) return mine; // 이미 실행 중이면 새로 조회
+            existing.followers++;
+            return existing;
+        });
+
+        if (flight != mine) { // follower
+            Object result;
+            try {
+                result = await(flight, key, timeoutNanos, cancelled);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof QueryTimeoutException || cause instanceof QueryCancelledException) {
+                    return query.apply(() -> {}); // leader의 예산/취소 때문에 실패 -> 이 호출의 예산으로 직접 조회
+                }
+                if (cause instanceof RuntimeException re) throw re;
+                throw new RuntimeException(cause);
+            }
+            metrics.coalesced.increment();
+            return copy.apply((T) result);
+        }
+
+        T value;
+        try {
+            value = query.apply(() -> mine.executedNanos = System.nanoTime());
+        } catch (RuntimeException e) {
+            inFlight.remove(key, mine);
+            mine.result.completeExceptionally(e);
+            throw e;
+        }
+
+        inFlight.remove(key, mine); // 이후로는 follower가 늘지 않는다
+        mine.result.complete(mine.followers > 0 && value != null ? copy.apply(value) : value);
+        return value;
+    }
+
+    // leader의 결과를 POLL_NANOS씩 나눠 기다리며 그 사이마다 이 호출의 취소와 남은 예산을 확인한다
+    private Object await(Flight flight, Key key, long timeoutNanos, BooleanSupplier cancelled) throws ExecutionException {
+        long deadline = timeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + timeoutNanos;
+        while (true) {
+            if (cancelled.getAsBoolean()) {
+                metrics.cancellations.increment();
+                throw new QueryCancelledException("같은 조회의 결과를 기다리다 취소되었습니다: " + key.sql());
+            }
+            long remaining = deadline == Long.MAX_VALUE ? POLL_NANOS : deadline - System.nanoTime();
+            if (remaining <= 0) {
+                metrics.timeouts.increment();
+                throw new QueryTimeoutException("같은 조회의 결과를 기다리다 시간 예산을 모두 사용했습니다: " + key.sql());
+            }
+
+            try {
+                return flight.result.get(Math.min(remaining, POLL_NANOS), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // 아직 실행 중 -> 취소와 예산을 다시 확인
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                metrics.cancellations.increment();
+                throw new QueryCancelledException("같은 조회의 결과를 기다리다 인터럽트되었습니다: " + key.sql(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.back;
+
+import java.util.function.LongSupplier;
+
+/*
+샤드마다 AUTO_INCREMENT를 쓰면 id가 겹치므로 애플리케이션에서 전역으로 유일한 id를 만든다
+
+64bit = 부호 1bit | 타임스탬프(ms, EPOCH 기준) 41bit | 노드 10bit | 시퀀스 12bit
+- 노드(애플리케이션 인스턴스)마다 nodeId가 달라야 한다
+- 같은 ms 안에서 4096개를 넘으면 다음 ms까지 기다린다
+- 값이 INT 범위를 넘으므로 id 컬럼은 BIGINT여야 한다
+ */
+public class SnowflakeIdGenerator {
+    private static final long EPOCH = 1735657200000L; // 2025-01-01T00:00:00+09:00
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+    private final LongSupplier clock;
+    private long lastTimestamp = -1;
+    private long sequence = 0;
+
+    public SnowflakeIdGenerator(long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    // clock: 현재 시각(ms), 테스트에서 시계를 고정하거나 되돌릴 때 쓴다
+    public SnowflakeIdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE)
+            throw new IllegalArgumentException("nodeId는 0 ~ " + MAX_NODE + " 이어야 합니다: " + nodeId);
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    public synchronized long nextId() {
+        long now = clock.getAsLong();
+        if (now < lastTimestamp) now = lastTimestamp; // 시계가 뒤로 가도 id가 줄어들지 않게
+
+        if (now == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) { // 이번 ms의 시퀀스를 다 썼으면 다음 ms까지 대기
+                while ((now = clock.getAsLong()) <= lastTimestamp) Thread.onSpinWait();
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = now;
+
+        return ((now - EPOCH) << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+}
@@ -1,26 +1,146 @@
 package com.back;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.springframework.validation.ObjectError;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.sql.*;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 public class Sql {
-    private final Connection connection;
+    private final SimpleDb simpleDb; // 직접 생성한 경우 null
+    private Connection connection; // 트랜잭션 밖에서는 실행 시점에 연다
     private final StringBuilder sb = new StringBuilder();
     private final List<Object> params = new ArrayList<>();
     private final boolean autoClose;
+    private boolean lazyBody = false;
+
+    // 타임아웃 / 취소
+    private static final long NO_TIMEOUT = Long.MAX_VALUE;
+    private static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "simpledb-query-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Duration timeout; // null이면 SimpleDb의 기본 타임아웃
+    private QueryContext context;
+    private volatile PreparedStatement running; // 실행 중인 Statement (cancel 대상)
+    private volatile boolean cancelled = false;
+    private volatile boolean timedOut = false; // 타임아웃 작업이 실행됨 (실행이 이미 성공한 뒤일 수도 있다)
+    private boolean failedByTimeout = false; // JDBC 호출이 실제로 타임아웃으로 실패함 (failure()에서 설정)
+    private ScheduledFuture<?> timeoutTask;
+    private long startedNanos;
+
+    // 동시 실행 한도
+    private QueryPriority priority; // null이면 문장 종류별 기본값
+    private QueryPriority admitted; // 실행 자리를 얻은 우선순위, 얻지 않았으면 null
+
+    // single-flight
+    private Boolean singleFlight; // null이면 SimpleDb 설정을 따른다
+    private Runnable onExecute; // single-flight leader: 문장을 DB로 보내기 직전에 호출
+
+    // 프로토콜 압축 / 전송량
+    private Boolean compression; // null이면 SimpleDb 설정을 따른다
+    private long sentAtStart = -1; // 실행 전 스레드의 누적 전송량, -1이면 아직 실행 전
+    private long receivedAtStart;
+    private long bytesSent = 0;
+    private long bytesReceived = 0;
+
+    // 실행할 때마다 결과가 달라지는 함수가 있으면 같은 SQL이라도 결과를 나눠 갖지 않는다
+    private static final Pattern NONDETERMINISTIC = Pattern.compile(
+            "\\b(NOW|SYSDATE|CURDATE|CURTIME|UNIX_TIMESTAMP|UTC_TIMESTAMP|RAND|UUID|UUID_SHORT"
+                    + "|CONNECTION_ID|LAST_INSERT_ID|FOUND_ROWS|ROW_COUNT)\\s*\\(|\\b(CURRENT_(TIMESTAMP|DATE|TIME)|LOCALTIME(STAMP)?)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    // lazy 로더가 body를 다시 읽을 테이블: FROM 바로 뒤 테이블, 뒤에 쉼표가 붙으면(FROM a, b) 여러 테이블
+    private static final Pattern FROM_TABLE = Pattern.compile(
+            "\\bFROM\\s+`?(\\w+)`?((?:\\s+(?:AS\\s+)?\\w+)?\\s*,)?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FROM = Pattern.compile("\\bFROM\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern JOIN = Pattern.compile("\\bJOIN\\b", Pattern.CASE_INSENSITIVE);
 
     public Sql(Connection connection, boolean autoClose) {
+        this(null, connection, autoClose);
+    }
+
+    Sql(SimpleDb simpleDb, Connection connection, boolean autoClose) {
+        this.simpleDb = simpleDb;
         this.connection = connection;
         this.autoClose = autoClose;
     }
 
+    // 이 쿼리만의 타임아웃 (SimpleDb 기본값보다 우선)
+    public Sql timeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    // 요청 단위 시간 예산/취소를 공유 (남은 예산과 타임아웃 중 짧은 쪽이 적용된다)
+    public Sql context(QueryContext context) {
+        this.context = context;
+        return this;
+    }
+
+    /*
+    같은 SQL + 같은 파라미터의 조회가 동시에 들어오면 한 번만 실행하고 결과를 나눠 갖는다 (기본: SimpleDb 설정, 꺼짐)
+    이 호출보다 먼저 DB로 보낸 조회에는 합류하지 않으므로 호출 전에 커밋된 쓰기는 결과에 보인다
+     */
+    public Sql singleFlight(boolean enabled) {
+        this.singleFlight = enabled;
+        return this;
+    }
+
+    /*
+    한도가 찼을 때 대기열에서의 순서 (기본: 쓰기 WRITE, 조회 INTERACTIVE, selectRowBuffer/aggregate/writeJson/forEachRow BATCH)
+    스트리밍 조회(writeJson, forEachRow)는 실행 시간에 호출자가 결과를 처리하는 시간까지 들어가므로
+    단건 조회의 지연 시간 기준(INTERACTIVE)에 섞이지 않도록 BATCH로 잡는다
+     */
+    public Sql priority(QueryPriority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /*
+    이 쿼리만 프로토콜 압축을 켜거나 끈다 (SimpleDb 설정과 다르면 이 쿼리 전용 커넥션을 따로 연다)
+    트랜잭션 중에는 트랜잭션 커넥션의 설정을 그대로 쓴다
+     */
+    public Sql compression(boolean enabled) {
+        this.compression = enabled;
+        return this;
+    }
+
+    // 마지막 실행에서 DB와 실제로 주고받은 바이트 (SimpleDb.setWireMetricsEnabled(true)일 때만 집계, 압축 후 크기)
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    // 다른 스레드에서 호출해 실행 중인(또는 실행할) 쿼리를 중단한다
+    public void cancel() {
+        cancelled = true;
+        PreparedStatement ps = running;
+        if (ps != null) cancelQuietly(ps);
+    }
+
     public Sql append(String part, Object... values) {
         if(sb.length() > 0) sb.append(" ");
         sb.append(part); // sql문 저장
@@ -40,21 +160,152 @@ public class Sql {
         // DriverManager로 얻은 DB연결
         // Statement.RETURN_GENERATED_KEYS: 생성된 PK 반환 옵션
 
+        boolean capturing = false;
         try (PreparedStatement ps =
-                     connection.prepareStatement(sb.toString(), Statement.RETURN_GENERATED_KEYS)) {
+                     track(connection(QueryPriority.WRITE).prepareStatement(sb.toString(), Statement.RETURN_GENERATED_KEYS))) {
             bind(ps);
+            ChangeCapture.Target target = changeTarget();
+            if (target != null) {
+                simpleDb.beginCapture(connection, !autoClose);
+                capturing = true;
+            }
             ps.executeUpdate(); // Insert 쿼리 실행
-            try (ResultSet rs = ps.getGeneratedKeys()) { // DB가 방금 생성한 키를 ResultSet 형태로 반환
-                if (rs.next()) return rs.getLong(1);
+            List<Long> keys = ChangeCapture.generatedKeys(ps); // DB가 방금 생성한 키를 ResultSet 형태로 반환
+            if (target != null) {
+                simpleDb.commitCapture(connection,
+                        simpleDb.changeCapture().changes(connection, target, List.of(), keys), !autoClose);
+                capturing = false;
             }
-            return 0;
+            return keys.isEmpty() ? 0 : keys.get(0);
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            throw failure(e);
         } finally {
+            if (capturing) simpleDb.abortCapture(connection, !autoClose);
+            untrack();
             close();
         }
     }
 
+    // 트랜잭션 밖의 Sql은 genSql() 시점이 아니라 실제로 실행할 때 커넥션을 연다
+    // (single-flight로 다른 호출의 결과를 받는 경우에는 커넥션을 열지도, 실행 자리를 잡지도 않는다)
+    private Connection connection(QueryPriority defaultPriority) throws SQLException {
+        admit(defaultPriority);
+        if (connection == null) {
+            connection = compression != null && compression != simpleDb.isCompression()
+                    ? simpleDb.openConnection(SimpleDb.compressionProperties(compression))
+                    : simpleDb.openConnection();
+        }
+        // 드라이버는 이 스레드에서 소켓을 읽고 쓰므로 실행 전후 누적값의 차이가 이 쿼리의 전송량
+        // (커넥션만 받아 만든 Sql은 집계할 SimpleDbMetrics가 없다)
+        if (simpleDb != null) {
+            sentAtStart = CountingSocketFactory.sentByCurrentThread();
+            receivedAtStart = CountingSocketFactory.receivedByCurrentThread();
+        }
+        return connection;
+    }
+
+    // 커넥션을 열기 전에 실행 자리를 잡는다 (한도를 넘으면 대기하거나 SimpleDbOverloadException)
+    private void admit(QueryPriority defaultPriority) {
+        if (simpleDb == null || admitted != null) return;
+        QueryPriority effective = priority != null ? priority : defaultPriority;
+        if (simpleDb.getConcurrencyLimiter().acquire(effective, timeoutNanos())) admitted = effective;
+    }
+
+    /*
+    실행 직전: 남은 시간 예산을 확인하고, 타임아웃이 되면 Statement.cancel()이 호출되도록 예약한다
+    MySQL 드라이버의 cancel()은 별도 커넥션으로 KILL QUERY를 보내 쿼리만 중단하므로 커넥션은 그대로 쓸 수 있다
+     */
+    private PreparedStatement track(PreparedStatement ps) throws SQLException {
+        if (cancelled || (context != null && context.isCancelled())) {
+            ps.close();
+            if (simpleDb != null) simpleDb.getMetrics().cancellations.increment();
+            throw new QueryCancelledException("취소된 쿼리입니다: " + sb);
+        }
+
+        long timeoutNanos = timeoutNanos();
+        if (timeoutNanos <= 0) {
+            ps.close();
+            if (simpleDb != null) simpleDb.getMetrics().timeouts.increment();
+            throw new QueryTimeoutException("시간 예산을 모두 사용했습니다: " + sb);
+        }
+
+        running = ps;
+        timedOut = false;
+        failedByTimeout = false;
+        if (context != null) context.register(ps);
+        if (cancelled) cancelQuietly(ps); // 등록 직전에 cancel()된 경우
+        if (timeoutNanos != NO_TIMEOUT) {
+            timeoutTask = TIMEOUTS.schedule(() -> {
+                timedOut = true;
+                cancelQuietly(ps);
+            }, timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+
+        startedNanos = System.nanoTime();
+        if (onExecute != null) onExecute.run();
+        if (simpleDb != null) simpleDb.getMetrics().queries.increment();
+        return ps;
+    }
+
+    private void untrack() {
+        PreparedStatement ps = running;
+        long elapsed = -1; // 실행 전에 실패했으면 한도 조절에 쓰지 않는다
+        if (ps != null) {
+            running = null;
+            elapsed = System.nanoTime() - startedNanos;
+            if (timeoutTask != null) {
+                timeoutTask.cancel(false);
+                timeoutTask = null;
+            }
+            if (context != null) context.unregister(ps);
+            if (simpleDb != null) simpleDb.getMetrics().queryNanos.add(elapsed);
+        }
+        if (admitted != null) {
+            QueryPriority released = admitted;
+            admitted = null;
+            // 성공한 직후에 타임아웃 작업이 실행되어 timedOut만 켜진 경우는 drop이 아니다
+            simpleDb.getConcurrencyLimiter().release(released, elapsed, failedByTimeout);
+        }
+        if (sentAtStart >= 0 && simpleDb != null) {
+            bytesSent = CountingSocketFactory.sentByCurrentThread() - sentAtStart;
+            bytesReceived = CountingSocketFactory.receivedByCurrentThread() - receivedAtStart;
+            sentAtStart = -1;
+            SimpleDbMetrics metrics = simpleDb.getMetrics();
+            metrics.bytesSent.add(bytesSent);
+            metrics.bytesReceived.add(bytesReceived);
+        }
+    }
+
+    // 쿼리 타임아웃과 QueryContext의 남은 시간 중 짧은 쪽
+    private long timeoutNanos() {
+        Duration effective = timeout != null ? timeout : simpleDb == null ? null : simpleDb.getDefaultQueryTimeout();
+        long nanos = effective == null || effective.isZero() ? NO_TIMEOUT : effective.toNanos();
+        if (context != null && context.hasDeadline()) nanos = Math.min(nanos, context.remaining().toNanos());
+        return nanos;
+    }
+
+    private static void cancelQuietly(Statement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException ignore) {}
+    }
+
+    // SQL 오류를 타임아웃 / 취소 / 일반 오류로 구분하고 통계에 남긴다
+    private RuntimeException failure(SQLException e) {
+        SimpleDbMetrics metrics = simpleDb == null ? null : simpleDb.getMetrics();
+        if (timedOut || e instanceof SQLTimeoutException) {
+            failedByTimeout = true;
+            if (metrics != null) metrics.timeouts.increment();
+            return new QueryTimeoutException("쿼리 타임아웃: " + sb, e);
+        }
+        if (cancelled || (context != null && context.isCancelled())) {
+            if (metrics != null) metrics.cancellations.increment();
+            return new QueryCancelledException("쿼리가 취소되었습니다: " + sb, e);
+        }
+        if (metrics != null) metrics.failures.increment();
+        return new RuntimeException(e);
+    }
+
     private void bind(PreparedStatement ps) throws SQLException {
         for (int i = 0; i < params.size(); i++) {
             /*
@@ -78,50 +329,70 @@ public class Sql {
     }
 
     public int update() {
-        try (PreparedStatement ps =
-                     connection.prepareStatement(sb.toString())) {
-            bind(ps);
-            return ps.executeUpdate(); // 수정된 row 갯수 밴환
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        } finally {
-            close();
-        }
+        return executeUpdate(); // 수정된 row 갯수 밴환
     }
 
     public int delete() {
+        return executeUpdate(); // 삭제된 row 갯수 밴환
+    }
+
+    private int executeUpdate() {
+        boolean capturing = false;
         try (PreparedStatement ps =
-                     connection.prepareStatement(sb.toString())) {
+                     track(connection(QueryPriority.WRITE).prepareStatement(sb.toString()))) {
             bind(ps);
-            return ps.executeUpdate(); // 삭제된 row 갯수 밴환
+            ChangeCapture.Target target = changeTarget();
+            if (target == null) return ps.executeUpdate();
+
+            // 실행 전에 변경될 행을 잠그고 읽어 두어야 before 이미지가 실제로 바뀌기 직전의 값이 된다
+            simpleDb.beginCapture(connection, !autoClose);
+            capturing = true;
+            List<Map<String, Object>> before = simpleDb.changeCapture().before(connection, target);
+            int affected = ps.executeUpdate();
+            simpleDb.commitCapture(connection,
+                    simpleDb.changeCapture().changes(connection, target, before, List.of()), !autoClose);
+            capturing = false;
+            return affected;
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            throw failure(e);
         } finally {
+            if (capturing) simpleDb.abortCapture(connection, !autoClose);
+            untrack();
             close();
         }
     }
 
+    // 변경 구독자가 있을 때만 캡처 대상을 만든다 (PK 메타데이터를 읽어야 하므로 커넥션을 연 뒤에 호출)
+    private ChangeCapture.Target changeTarget() throws SQLException {
+        if (simpleDb == null || !simpleDb.isCapturingChanges()) return null;
+        return simpleDb.changeCapture().target(connection, sb.toString(), params);
+    }
+
     //파라미터가 없는 버전
 
     public List<Map<String, Object>> selectRows() {
+        return coalesce("rows", this::queryRows, Sql::copyRows);
+    }
+
+    private List<Map<String, Object>> queryRows() {
         List<Map<String, Object>> results = new ArrayList<>();
         try (PreparedStatement ps =
-                     connection.prepareStatement(sb.toString())) { //append로 모인 SQL문
+                     track(connection(QueryPriority.INTERACTIVE).prepareStatement(sb.toString()))) { //append로 모인 SQL문
             bind(ps); // append 호출 시 추가했던 ?를 바인드
             try (ResultSet rs = ps.executeQuery()) { // 결과 반환
-                ResultSetMetaData meta = rs.getMetaData();
-                int columnCount = meta.getColumnCount();
+                ColumnTypes.Column[] columns = columnTypes(rs); // 컬럼별 getter는 SQL 모양마다 한 번만 결정
                 while(rs.next()) {
                     Map<String, Object> row = new HashMap<>();
-                    for (int i = 1; i <= columnCount; i++) {
-                        row.put(meta.getColumnLabel(i), rs.getObject(i)); //컬럼에 실제 값을 넣는 상황
+                    for (int i = 0; i < columns.length; i++) {
+                        row.put(columns[i].label(), columns[i].reader().read(rs, i + 1)); //컬럼에 실제 값을 넣는 상황
                     }
                     results.add(row); // 다 넣고 리스트에 추가
                 }
             }
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            throw failure(e);
         } finally {
+            untrack();
             close();
         }
 
@@ -129,6 +400,123 @@ public class Sql {
     }
 
 
+    /*
+    결과가 너무 커서 List<Map>으로 담을 수 없을 때 사용
+    행을 바이너리로 인코딩해 힙 밖에 담고, SimpleDb의 메모리 한도를 넘으면 임시 파일로 스필한다
+    드라이버가 결과 전체를 힙에 올리지 않도록 한 행씩 스트리밍으로 읽는다
+
+    반환된 RowBuffer는 다 쓴 뒤 close() 해야 한다
+     */
+    public RowBuffer selectRowBuffer() {
+        long memoryLimit = simpleDb == null ? RowBuffer.DEFAULT_MEMORY_LIMIT : simpleDb.getRowBufferMemoryLimit();
+        try (PreparedStatement ps = track(connection(QueryPriority.BATCH).prepareStatement(sb.toString(),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))) {
+            ps.setFetchSize(Integer.MIN_VALUE); // MySQL 드라이버의 행 단위 스트리밍 모드
+            bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                return RowBuffer.from(rs, memoryLimit);
+            }
+        } catch (SQLException e) {
+            throw failure(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            untrack();
+            close();
+        }
+    }
+
+    // 행을 Map으로 만들지 않고 스트리밍으로 읽으면서 집계
+    public AggregationResult aggregate(Aggregation aggregation) {
+        try (PreparedStatement ps = track(connection(QueryPriority.BATCH).prepareStatement(sb.toString(),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))) {
+            ps.setFetchSize(Integer.MIN_VALUE); // MySQL 드라이버의 행 단위 스트리밍 모드
+            bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                return aggregation.collect(rs);
+            }
+        } catch (SQLException e) {
+            throw failure(e);
+        } finally {
+            untrack();
+            close();
+        }
+    }
+
+    /*
+    조회 결과를 List<Map>에 모으지 않고 가져오는 대로 JSON 배열로 바로 쓴다 (반환: 쓴 행 수)
+    OutputStream은 닫지 않는다
+
+    예) sql.append("SELECT * FROM article").writeJson(response.getOutputStream());
+     */
+    public long writeJson(OutputStream out) {
+        try (JsonGenerator gen = JsonRowWriter.JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            return writeJson(gen);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+    ObjectMapper 설정(들여쓰기 등)을 쓰려면 mapper.getFactory().createGenerator(out)로 만든 generator를 넘긴다
+    쓰는 동안 넘긴 generator의 AUTO_CLOSE_JSON_CONTENT를 끄고, 다 쓰면 원래 설정으로 되돌린다
+    중간에 실패하면 꺼진 채로 두므로 호출자가 generator를 닫아도 닫는 괄호가 붙지 않는다
+    -> 받는 쪽이 잘린 응답임을 알 수 있다
+     */
+    public long writeJson(JsonGenerator gen) {
+        boolean autoCloseContent = gen.isEnabled(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        boolean written = false;
+        try (PreparedStatement ps = track(connection(QueryPriority.BATCH).prepareStatement(sb.toString(),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))) {
+            ps.setFetchSize(Integer.MIN_VALUE); // MySQL 드라이버의 행 단위 스트리밍 모드
+            bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                long rows = JsonRowWriter.write(rs, columnTypes(rs), gen);
+                written = true;
+                return rows;
+            }
+        } catch (SQLException e) {
+            throw failure(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (written && autoCloseContent) gen.enable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            untrack();
+            close();
+        }
+    }
+
+    /*
+    행을 모아두지 않고 한 행씩 handler에 넘긴다 (반환: 처리한 행 수)
+    스트리밍 모드라 드라이버가 한 번에 한 행만 메모리에 두고, handler가 끝날 때까지 커넥션을 점유한다
+    메모리는 결과 전체가 아니라 가장 큰 행 하나만큼 쓴다 (행 안의 값은 나눠 받지 않는다)
+     */
+    public long forEachRow(StreamedRow.Handler handler) {
+        try (PreparedStatement ps = track(connection(QueryPriority.BATCH).prepareStatement(sb.toString(),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))) {
+            ps.setFetchSize(Integer.MIN_VALUE); // MySQL 드라이버의 행 단위 스트리밍 모드
+            bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                StreamedRow row = new StreamedRow(rs);
+                while (row.next()) handler.handle(row);
+                return row.getRowNumber();
+            }
+        } catch (SQLException e) {
+            throw failure(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            untrack();
+            close();
+        }
+    }
+
+    // 트랜잭션 커넥션을 쓰는 Sql인지 (트랜잭션 커넥션은 여러 스레드에서 동시에 쓸 수 없다)
+    boolean isInTransaction() {
+        return !autoClose;
+    }
+
     public Map<String, Object> selectRow() {
         List<Map<String, Object>> row = selectRows();
 
@@ -142,96 +530,193 @@ public class Sql {
     // 파라미터가 있는 버전
 
     public List<Article> selectRows(Class<Article> articleClass) {
+        if (lazyBody) return queryArticles(); // lazy 로더는 호출자마다 따로 있어야 한다
+        return coalesce("articles", this::queryArticles, Sql::copyArticles);
+    }
+
+    private List<Article> queryArticles() {
         List<Article> results = new ArrayList<>();
-        try (PreparedStatement ps = connection.prepareStatement(sb.toString())) {
+        try (PreparedStatement ps = track(connection(QueryPriority.INTERACTIVE).prepareStatement(sb.toString()))) {
             // PreparedStatement에 파라미터 바인딩
             bind(ps);
 
             try (ResultSet rs = ps.executeQuery()) {
+                // SELECT에 포함된 컬럼만 읽는다 (없는 컬럼은 0), 컬럼 위치는 행마다가 아니라 한 번만 찾는다
+                ResultSetMetaData meta = rs.getMetaData();
+                int id = columnIndex(meta, "id");
+                int title = columnIndex(meta, "title");
+                int body = columnIndex(meta, "body");
+                int createdDate = columnIndex(meta, "createdDate");
+                int modifiedDate = columnIndex(meta, "modifiedDate");
+                int isBlind = columnIndex(meta, "isBlind");
+
+                ArticleBodyLoader bodyLoader = lazyBody && body == 0 ? newBodyLoader(id) : null;
+
                 while (rs.next()) {
                     Article article = new Article();
 
                     // 컬럼별로 값을 세팅
-                    article.setId(rs.getLong("id"));
-                    article.setTitle(rs.getString("title"));
-                    article.setBody(rs.getString("body"));
-                    article.setCreatedDate(rs.getTimestamp("createdDate").toLocalDateTime());
-                    article.setModifiedDate(rs.getTimestamp("modifiedDate").toLocalDateTime());
-                    article.setBlind(rs.getBoolean("isBlind"));
+                    if (id > 0) article.setId(rs.getLong(id));
+                    if (title > 0) article.setTitle(rs.getString(title));
+                    if (body > 0) article.setBody(rs.getString(body));
+                    if (createdDate > 0) article.setCreatedDate(rs.getObject(createdDate, LocalDateTime.class));
+                    if (modifiedDate > 0) article.setModifiedDate(rs.getObject(modifiedDate, LocalDateTime.class));
+                    if (isBlind > 0) article.setBlind(rs.getBoolean(isBlind));
+                    if (bodyLoader != null) bodyLoader.add(article);
 
                     results.add(article);
                 }
             }
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            throw failure(e);
         } finally {
+            untrack();
             close(); // autoClose가 true면 커넥션 닫힘
         }
         return results;
     }
 
+    private static int columnIndex(ResultSetMetaData meta, String label) throws SQLException {
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            if (meta.getColumnLabel(i).equalsIgnoreCase(label)) return i;
+        }
+        return 0;
+    }
+
+    private ArticleBodyLoader newBodyLoader(int idColumn) {
+        if (simpleDb == null)
+            throw new IllegalStateException("lazy 로딩은 SimpleDb.genSql()로 만든 Sql에서만 사용할 수 있습니다");
+        if (idColumn == 0)
+            throw new IllegalStateException("lazy 로딩하려면 SELECT에 id 컬럼이 있어야 합니다");
+
+        // 서브쿼리, JOIN, 여러 테이블이면 첫 FROM의 테이블이 id의 테이블이라는 보장이 없으므로 추측하지 않는다
+        if (FROM.matcher(sb).results().count() != 1 || JOIN.matcher(sb).find())
+            throw new IllegalStateException("lazy 로딩은 테이블 하나만 조회하는 SELECT에서만 사용할 수 있습니다: " + sb);
+        Matcher m = FROM_TABLE.matcher(sb);
+        if (!m.find() || m.group(2) != null)
+            throw new IllegalStateException("lazy 로딩은 테이블 하나만 조회하는 SELECT에서만 사용할 수 있습니다: " + sb);
+        return new ArticleBodyLoader(simpleDb, m.group(1));
+    }
+
+    /*
+    SELECT에서 뺀 큰 컬럼을 처음 접근할 때 읽어오도록 지정 (현재는 Article의 body만 지원)
+    예) SELECT id, title, createdDate, modifiedDate, isBlind FROM article 후 lazy("body")
+    body는 FROM의 테이블에서 id로 다시 읽으므로 서브쿼리, JOIN, 여러 테이블을 쓰는 SELECT는 조회할 때 예외
+     */
+    public Sql lazy(String... columns) {
+        for (String column : columns) {
+            if (!column.equalsIgnoreCase("body"))
+                throw new IllegalArgumentException("lazy 로딩을 지원하지 않는 컬럼: " + column);
+            lazyBody = true;
+        }
+        return this;
+    }
+
 
     public Article selectRow(Class<Article> articleClass) {
         List<Article> articles = selectRows(articleClass); // 파라미터가 있는 경우 사용
         return articles.isEmpty() ? null : articles.get(0);
     }
 
+    /*
+    단일 값 조회는 getObject(1) 후 캐스팅/변환하지 않고 드라이버의 타입별 getter를 바로 사용한다
+    primitive getter는 NULL일 때 0/false를 돌려주므로 wasNull()로 NULL 여부를 확인
+     */
     public LocalDateTime selectDatetime() {
-        return LocalDateTime.now();
+        return selectFirst("datetime", (rs, columns) -> rs.getObject(1, LocalDateTime.class));
     }
 
     public Long selectLong() {
-        try(PreparedStatement ps = connection.prepareStatement(sb.toString())) { // 현재 누적된 SQL 실행
-            bind(ps);
-            try(ResultSet rs = ps.executeQuery()) { // 맨 첫 행 이동
-                if(rs.next()) {
-                    Object value = rs.getObject(1);
-                    return value == null? null : ((Number) value).longValue(); // 원하는 id가 없는 경우 null, 있는 경우 출력
-                }
-                return null;
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        } finally {
-            close();
-        }
+        return selectFirst("long", (rs, columns) -> {
+            long value = rs.getLong(1);
+            return rs.wasNull() ? null : value; // 원하는 id가 없는 경우 null, 있는 경우 출력
+        });
     }
 
     public String selectString() {
-        try(PreparedStatement ps = connection.prepareStatement(sb.toString())) { // 현재 누적된 SQL 실행
+        return selectFirst("string", (rs, columns) -> rs.getString(1)); // 원하는 제목이 없는 경우 null, 있는 경우 제목 그대로 출력
+    }
+
+    public Boolean selectBoolean() {
+        return selectFirst("boolean", (rs, columns) -> {
+            Object value = columns[0].reader().read(rs, 1); // 캐시된 컬럼 타입으로 getObject(1)과 같은 타입을 읽는다
+            if (value == null) return null;
+            if (value instanceof Boolean b) return b;
+            if (value instanceof Number n) return n.intValue() != 0; // BIT(), TINYINT(), DOUBLE 등 숫자로 저장된 경우
+            return Boolean.parseBoolean(value.toString());
+        });
+    }
+
+    @FunctionalInterface
+    private interface ValueReader<T> {
+        T read(ResultSet rs, ColumnTypes.Column[] columns) throws SQLException;
+    }
+
+    // 첫 행의 값을 읽는다, 행이 없으면 null (값이 불변이므로 single-flight 결과를 복사 없이 공유)
+    private <T> T selectFirst(String kind, ValueReader<T> reader) {
+        return coalesce(kind, () -> queryFirst(reader), value -> value);
+    }
+
+    private <T> T queryFirst(ValueReader<T> reader) {
+        try(PreparedStatement ps = track(connection(QueryPriority.INTERACTIVE).prepareStatement(sb.toString()))) { // 현재 누적된 SQL 실행
             bind(ps);
             try(ResultSet rs = ps.executeQuery()) { // 맨 첫 행 이동
-                if(rs.next()) {
-                    Object value = rs.getObject(1);
-                    return value == null? null : value.toString(); // 원하는 제목이 없는 경우 null, 있는 경우 제목 그대로 출력
-                }
+                if(rs.next()) return reader.read(rs, columnTypes(rs));
                 return null;
             }
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            throw failure(e);
         } finally {
+            untrack();
             close();
         }
     }
 
-    public Boolean selectBoolean() {
-        try(PreparedStatement ps = connection.prepareStatement(sb.toString())) { // 현재 누적된 SQL 실행
-            bind(ps);
-            try(ResultSet rs = ps.executeQuery()) { // 맨 첫 행 이동
-                if(rs.next()) {
-                    Object value = rs.getObject(1);
-                    if(value == null) return null; //null인지 확인
-                    if(value instanceof Boolean) return (Boolean) value; // boolean인지 확인
-                    if(value instanceof Number) return ((Number) value).intValue() != 0; // BIT(), TINYINT()로 저장된 경우 -> Boolean 변환
-                    return Boolean.parseBoolean(value.toString());
-                }
-                return null;
+    private ColumnTypes.Column[] columnTypes(ResultSet rs) throws SQLException {
+        if (simpleDb == null) return ColumnTypes.resolve(rs.getMetaData());
+        return simpleDb.columnTypes().of(sb.toString(), rs.getMetaData());
+    }
+
+    /*
+    single-flight를 켠 트랜잭션 밖의 조회는 같은 조회가 동시에 들어오면 한 번만 실행하고 결과를 나눠 갖는다
+    결과가 가변 객체(List, Map, Article)이면 호출자마다 복사본을 돌려준다
+     */
+    private <T> T coalesce(String kind, Supplier<T> query, UnaryOperator<T> copy) {
+        if (simpleDb == null || !autoClose) return query.get();
+        boolean enabled = singleFlight != null ? singleFlight : simpleDb.isSingleFlightEnabled();
+        if (!enabled || NONDETERMINISTIC.matcher(sb).find()) return query.get();
+
+        SingleFlight.Key key = new SingleFlight.Key(kind, sb.toString(), new ArrayList<>(params));
+        // 기다리는 쪽도 자기 예산만큼만 기다리고, 자기 cancel() / QueryContext 취소로 바로 빠져나온다
+        return simpleDb.singleFlight().execute(key, onExecute -> {
+            this.onExecute = onExecute;
+            try {
+                return query.get();
+            } finally {
+                this.onExecute = null;
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        } finally {
-            close();
+        }, copy, timeoutNanos(), () -> cancelled || (context != null && context.isCancelled()));
+    }
+
+    private static List<Map<String, Object>> copyRows(List<Map<String, Object>> rows) {
+        List<Map<String, Object>> copies = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) copies.add(new HashMap<>(row));
+        return copies;
+    }
+
+    private static List<Article> copyArticles(List<Article> articles) {
+        List<Article> copies = new ArrayList<>(articles.size());
+        for (Article article : articles) {
+            Article copy = new Article();
+            copy.setId(article.getId());
+            copy.setTitle(article.getTitle());
+            copy.setBody(article.getBody());
+            copy.setCreatedDate(article.getCreatedDate());
+            copy.setModifiedDate(article.getModifiedDate());
+            copy.setBlind(article.isBlind());
+            copies.add(copy);
         }
+        return copies;
     }
 
     public Sql appendIn(String part, Object ... values) {
@@ -258,18 +743,23 @@ public class Sql {
     }
 
     public List<Long> selectLongs() {
+        return coalesce("longs", this::queryLongs, ArrayList::new);
+    }
+
+    private List<Long> queryLongs() {
         List<Long> results = new ArrayList<>();
-        try (PreparedStatement ps = connection.prepareStatement(sb.toString())) {
+        try (PreparedStatement ps = track(connection(QueryPriority.INTERACTIVE).prepareStatement(sb.toString()))) {
             bind(ps);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    Object value = rs.getObject(1);
-                    results.add(value == null ? null : ((Number) value).longValue());
+                    long value = rs.getLong(1);
+                    results.add(rs.wasNull() ? null : value);
                 }
             }
         } catch (SQLException e) {
-            throw new RuntimeException(e);
+            throw failure(e);
         } finally {
+            untrack();
             close();
         }
         return results;
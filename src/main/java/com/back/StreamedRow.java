@@ -0,0 +1,113 @@
+package com.back;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+Sql.forEachRow()가 한 행씩 넘겨주는 현재 행
+handle()이 끝나면 다음 행으로 넘어가므로 여기서 얻은 Reader / InputStream은 handle() 안에서만 읽을 수 있다
+
+행 단위 스트리밍: 드라이버는 결과 전체가 아니라 지금 행 하나만 메모리에 둔다
+다만 그 행의 값은 전부 받아 둔 상태라, 아주 큰 TEXT/BLOB 값 하나는 그 크기만큼 메모리에 올라온다
+(값 하나를 나눠 받아야 하면 SUBSTRING으로 구간을 나눠 조회한다)
+
+getReader / getInputStream은 받아 둔 값을 Reader / InputStream으로 넘겨주는 편의 메서드
+-> Writer / OutputStream으로 바로 옮길 때 쓴다
+예) sql.append("SELECT id, body FROM article").forEachRow(row -> {
+        try (Reader body = row.getReader("body")) {
+            body.transferTo(writer);
+        }
+    });
+ */
+public final class StreamedRow {
+    @FunctionalInterface
+    public interface Handler {
+        void handle(StreamedRow row) throws IOException;
+    }
+
+    private final ResultSet rs;
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+    private long rowNumber = 0;
+
+    StreamedRow(ResultSet rs) throws SQLException {
+        this.rs = rs;
+        ResultSetMetaData meta = rs.getMetaData();
+        for (int i = 1; i <= meta.getColumnCount(); i++) columnIndexes.putIfAbsent(meta.getColumnLabel(i), i);
+    }
+
+    boolean next() throws SQLException {
+        if (!rs.next()) return false;
+        rowNumber++;
+        return true;
+    }
+
+    // 1부터 시작하는 현재 행 번호
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    public Long getLong(String column) {
+        try {
+            long value = rs.getLong(indexOf(column));
+            return rs.wasNull() ? null : value;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public String getString(String column) {
+        try {
+            return rs.getString(indexOf(column));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Boolean getBoolean(String column) {
+        try {
+            boolean value = rs.getBoolean(indexOf(column));
+            return rs.wasNull() ? null : value;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public LocalDateTime getLocalDateTime(String column) {
+        try {
+            return rs.getObject(indexOf(column), LocalDateTime.class);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // TEXT 컬럼을 문자 스트림으로 (NULL이면 null, 드라이버가 이미 받아 둔 값을 읽는다)
+    public Reader getReader(String column) {
+        try {
+            return rs.getCharacterStream(indexOf(column));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // BLOB 등 바이너리 컬럼을 바이트 스트림으로 (NULL이면 null, 드라이버가 이미 받아 둔 값을 읽는다)
+    public InputStream getInputStream(String column) {
+        try {
+            return rs.getBinaryStream(indexOf(column));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int indexOf(String column) {
+        Integer index = columnIndexes.get(column);
+        if (index == null) throw new IllegalArgumentException("조회 결과에 없는 컬럼입니다: " + column);
+        return index;
+    }
+}
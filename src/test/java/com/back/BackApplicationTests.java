@@ -3,7 +3,8 @@ package com.back;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// SimpleDb는 쿼리를 실행할 때 연결하므로 워밍업만 끄면 MySQL 없이도 컨텍스트가 뜬다
+@SpringBootTest(properties = "simple-db.warm-up.enabled=false")
 class BackApplicationTests {
 
     @Test
@@ -0,0 +1,97 @@
+package com.back.loadtest;
+
+import org.junit.jupiter.api.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public class LatencyHistogramTest {
+    @Test
+    @DisplayName("기록이 없으면 모든 값이 0")
+    public void t001() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.count()).isEqualTo(0);
+        assertThat(histogram.percentileNanos(99)).isEqualTo(0);
+        assertThat(histogram.meanNanos()).isEqualTo(0);
+        assertThat(histogram.maxNanos()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("128ns 미만은 1ns 단위 그대로 세므로 백분위가 정확하다")
+    public void t002() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int nanos = 1; nanos <= 100; nanos++) histogram.record(nanos);
+
+        assertThat(histogram.count()).isEqualTo(100);
+        assertThat(histogram.percentileNanos(0)).isEqualTo(1);
+        assertThat(histogram.percentileNanos(50)).isEqualTo(50);
+        assertThat(histogram.percentileNanos(99)).isEqualTo(99);
+        assertThat(histogram.percentileNanos(100)).isEqualTo(100);
+        assertThat(histogram.meanNanos()).isEqualTo(50.5);
+        assertThat(histogram.maxNanos()).isEqualTo(100);
+    }
+
+    @Test
+    @DisplayName("큰 값은 버킷 상한으로 보고하되 실제 값보다 작지 않고 오차는 1/64 이내, 최댓값은 넘지 않는다")
+    public void t003() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) histogram.record(1_000_000);
+        histogram.record(50_000_000);
+
+        assertThat(histogram.percentileNanos(50)).isBetween(1_000_000L, 1_000_000L + 1_000_000L / 64);
+        assertThat(histogram.percentileNanos(99)).isEqualTo(histogram.percentileNanos(50));
+        // 마지막 1건은 최댓값으로 잘려서 버킷 상한이 아니라 실제 값이 나온다
+        assertThat(histogram.percentileNanos(99.9)).isEqualTo(50_000_000);
+        assertThat(histogram.percentileNanos(100)).isEqualTo(50_000_000);
+    }
+
+    @Test
+    @DisplayName("2의 거듭제곱 경계 근처 값도 버킷 상한이 값 이상이고 상대 오차가 1/64 이내")
+    public void t004() {
+        for (int bit = 1; bit < 62; bit++) {
+            long power = 1L << bit;
+            for (long value : new long[]{power - 1, power, power + 1}) {
+                long upper = LatencyHistogram.upperBound(LatencyHistogram.indexOf(value));
+
+                assertThat(upper).isGreaterThanOrEqualTo(value);
+                assertThat((double) (upper - value) / value).isLessThanOrEqualTo(1.0 / 64);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("add, 여러 스레드의 히스토그램을 합치면 한 곳에 기록한 것과 같다")
+    public void t005() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        LatencyHistogram all = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            long nanos = i * 10_000L;
+            (i % 2 == 0 ? first : second).record(nanos);
+            all.record(nanos);
+        }
+
+        LatencyHistogram merged = new LatencyHistogram();
+        merged.add(first);
+        merged.add(second);
+
+        assertThat(merged.count()).isEqualTo(1000);
+        assertThat(merged.maxNanos()).isEqualTo(10_000_000);
+        assertThat(merged.meanNanos()).isEqualTo(all.meanNanos());
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            assertThat(merged.percentileNanos(percentile)).isEqualTo(all.percentileNanos(percentile));
+        }
+    }
+
+    @Test
+    @DisplayName("음수 값은 0으로 기록")
+    public void t006() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertThat(histogram.count()).isEqualTo(1);
+        assertThat(histogram.percentileNanos(50)).isEqualTo(0);
+        assertThat(histogram.maxNanos()).isEqualTo(0);
+    }
+}
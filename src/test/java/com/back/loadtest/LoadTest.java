@@ -0,0 +1,274 @@
+package com.back.loadtest;
+
+import com.back.SimpleDb;
+import com.back.SimpleDbOverloadException;
+import com.back.loadtest.Workload.Operation;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/*
+SimpleDb 부하 테스트
+
+./gradlew loadTest --args="--db=simpleDb__load --seed=10000 --rates=500,1000,2000,4000 --threads=virtual --duration=20s"
+./gradlew loadTest --args="--concurrency=64 --threads=platform --mix=select=80,insert=20"
+
+- open loop (--rates): 정해진 도착률로 요청을 보낸다. 지연 시간은 "보냈어야 하는 시각"부터 재므로
+  SimpleDb가 밀려 요청이 늦게 시작된 시간도 포함된다 (coordinated omission 보정)
+  도착률을 올려 가며 처리량이 더 늘지 않고 p99가 급격히 커지는 지점이 포화점
+- closed loop (--rates 없음): --concurrency개 스레드가 쉬지 않고 요청을 보낸다 (최대 처리량 측정)
+
+옵션 (괄호는 기본값)
+--host(localhost) --user(root) --password(123414) --db(simpleDb__test)
+--threads: virtual | platform (virtual)
+--concurrency: closed loop 스레드 수 / open loop의 platform 스레드 풀 크기 (32)
+--rates: 초당 요청 수 목록, 단계별로 차례대로 실행
+--duration: 단계별 측정 시간 (20s), --warmup: 단계별 워밍업 시간 (5s)
+--mix: 작업 비율 (select=60,in=10,scan=5,insert=10,update=10,tx=5)
+--seed: 시작 전에 article 테이블을 다시 만들고 넣을 행 수, 0이면 기존 데이터 사용 (0)
+        기존 article을 지우므로 SimpleDbTest가 쓰는 simpleDb__test가 아닌 --db를 함께 지정한다
+--tx-dbs: tx 작업용 SimpleDb 수 (4)
+--max-outstanding: open loop에서 동시에 밀려 있을 수 있는 최대 요청 수, 넘으면 보내지 않고 missed로 센다 (10000)
+--limiter: 동시 실행 한도(ConcurrencyLimiter)를 켤지 true | false (false)
+ */
+public class LoadTest {
+    private final Map<String, String> options;
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("="))
+                throw new IllegalArgumentException("--이름=값 형식이어야 합니다: " + arg);
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        new LoadTest(options).run();
+    }
+
+    private void run() throws InterruptedException {
+        SimpleDb simpleDb = newSimpleDb();
+        long seededRows = seed(simpleDb, Long.parseLong(option("seed", "0")));
+
+        List<SimpleDb> txDbs = new ArrayList<>();
+        for (int i = 0; i < Integer.parseInt(option("tx-dbs", "4")); i++) txDbs.add(newSimpleDb());
+
+        Workload workload = new Workload(simpleDb, txDbs,
+                Workload.parseMix(option("mix", "select=60,in=10,scan=5,insert=10,update=10,tx=5")), seededRows);
+
+        boolean virtual = switch (option("threads", "virtual")) {
+            case "virtual" -> true;
+            case "platform" -> false;
+            default -> throw new IllegalArgumentException("--threads는 virtual 또는 platform 입니다");
+        };
+        int concurrency = Integer.parseInt(option("concurrency", "32"));
+        Duration duration = parseDuration(option("duration", "20s"));
+        Duration warmup = parseDuration(option("warmup", "5s"));
+
+        String rates = options.get("rates");
+        if (rates == null) {
+            String title = "closed loop, %s threads x %d".formatted(virtual ? "virtual" : "platform", concurrency);
+            if (!warmup.isZero()) runClosedLoop(workload, virtual, concurrency, warmup);
+            report(title, runClosedLoop(workload, virtual, concurrency, duration), simpleDb);
+        } else {
+            int maxOutstanding = Integer.parseInt(option("max-outstanding", "10000"));
+            for (String rate : rates.split(",")) {
+                double perSecond = Double.parseDouble(rate.trim());
+                String title = "open loop %.0f/s, %s threads".formatted(perSecond, virtual ? "virtual" : "platform");
+                if (!warmup.isZero()) runOpenLoop(workload, virtual, concurrency, perSecond, warmup, maxOutstanding);
+                report(title, runOpenLoop(workload, virtual, concurrency, perSecond, duration, maxOutstanding), simpleDb);
+            }
+        }
+
+        simpleDb.close();
+        for (SimpleDb txDb : txDbs) txDb.close();
+    }
+
+    // 한 단계의 측정 결과
+    private static class StepResult {
+        final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+        final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+        final LongAdder rejected = new LongAdder(); // SimpleDbOverloadException
+        final LongAdder missed = new LongAdder(); // open loop에서 보내지 못한 요청
+        long elapsedNanos;
+
+        StepResult() {
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new LatencyHistogram());
+                errors.put(operation, new LongAdder());
+            }
+        }
+
+        void execute(Workload workload, Operation operation, long startNanos) {
+            try {
+                workload.execute(operation);
+                latencies.get(operation).record(System.nanoTime() - startNanos);
+            } catch (SimpleDbOverloadException e) {
+                rejected.increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                errors.get(operation).increment();
+            }
+        }
+    }
+
+    private static StepResult runClosedLoop(Workload workload, boolean virtual, int concurrency, Duration duration)
+            throws InterruptedException {
+        StepResult result = new StepResult();
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+
+        List<Thread> workers = new ArrayList<>();
+        ThreadFactory factory = threadFactory(virtual);
+        for (int i = 0; i < concurrency; i++) {
+            Thread worker = factory.newThread(() -> {
+                while (System.nanoTime() < end) {
+                    result.execute(workload, workload.next(), System.nanoTime());
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) worker.join();
+
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static StepResult runOpenLoop(Workload workload, boolean virtual, int concurrency, double perSecond,
+                                          Duration duration, int maxOutstanding) throws InterruptedException {
+        StepResult result = new StepResult();
+        Semaphore outstanding = new Semaphore(maxOutstanding);
+        double intervalNanos = 1_000_000_000.0 / perSecond;
+
+        ExecutorService executor = virtual
+                ? Executors.newThreadPerTaskExecutor(threadFactory(true))
+                : Executors.newFixedThreadPool(concurrency, threadFactory(false));
+
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (long i = 0; ; i++) {
+            long intended = start + (long) (i * intervalNanos);
+            if (intended >= end) break;
+
+            long wait = intended - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+
+            if (!outstanding.tryAcquire()) {
+                result.missed.increment();
+                continue;
+            }
+            Operation operation = workload.next();
+            executor.execute(() -> {
+                try {
+                    result.execute(workload, operation, intended); // 늦게 시작한 시간도 지연 시간에 포함
+                } finally {
+                    outstanding.release();
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static ThreadFactory threadFactory(boolean virtual) {
+        return virtual
+                ? Thread.ofVirtual().name("load-", 0).factory()
+                : Thread.ofPlatform().name("load-", 0).daemon(true).factory();
+    }
+
+    private static void report(String title, StepResult result, SimpleDb simpleDb) {
+        double seconds = result.elapsedNanos / 1e9;
+        LatencyHistogram total = new LatencyHistogram();
+        long totalErrors = 0;
+
+        System.out.println();
+        System.out.printf("== %s, %.1fs ==%n", title, seconds);
+        System.out.printf("%-8s %10s %10s %9s %9s %9s %9s %8s%n",
+                "op", "count", "ops/s", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)", "errors");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram latency = result.latencies.get(operation);
+            long errors = result.errors.get(operation).sum();
+            if (latency.count() == 0 && errors == 0) continue;
+            printRow(operation.key, latency, errors, seconds);
+            total.add(latency);
+            totalErrors += errors;
+        }
+        printRow("total", total, totalErrors, seconds);
+        System.out.printf("rejected(overload) %d, missed %d, limit %d, rejections total %d%n",
+                result.rejected.sum(), result.missed.sum(),
+                simpleDb.getMetrics().getConcurrencyLimit(), simpleDb.getMetrics().getRejections());
+    }
+
+    private static void printRow(String name, LatencyHistogram latency, long errors, double seconds) {
+        System.out.printf("%-8s %10d %10.1f %9.2f %9.2f %9.2f %9.2f %8d%n",
+                name, latency.count(), latency.count() / seconds,
+                millis(latency.percentileNanos(50)), millis(latency.percentileNanos(99)),
+                millis(latency.percentileNanos(99.9)), millis(latency.maxNanos()), errors);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private long seed(SimpleDb simpleDb, long rows) {
+        if (rows <= 0) {
+            Long maxId = simpleDb.genSql().append("SELECT MAX(id) FROM article").selectLong();
+            return maxId == null ? 0 : maxId;
+        }
+
+        simpleDb.run("DROP TABLE IF EXISTS article");
+        simpleDb.run("""
+                CREATE TABLE article (
+                    id INT UNSIGNED NOT NULL AUTO_INCREMENT,
+                    PRIMARY KEY(id),
+                    createdDate DATETIME NOT NULL,
+                    modifiedDate DATETIME NOT NULL,
+                    title VARCHAR(100) NOT NULL,
+                    `body` TEXT NOT NULL,
+                    isBlind BIT(1) NOT NULL DEFAULT 0
+                )
+                """);
+
+        LocalDateTime now = LocalDateTime.now();
+        simpleDb.bulkLoad("article", List.of("createdDate", "modifiedDate", "title", "body", "isBlind"),
+                IntStream.rangeClosed(1, (int) rows)
+                        .mapToObj(no -> new Object[]{now, now, "제목%d".formatted(no), "내용%d".formatted(no), no % 2 == 0}));
+        return rows;
+    }
+
+    private SimpleDb newSimpleDb() {
+        SimpleDb simpleDb = new SimpleDb(option("host", "localhost"), option("user", "root"),
+                option("password", "123414"), option("db", "simpleDb__test"));
+        simpleDb.getConcurrencyLimiter().setEnabled(Boolean.parseBoolean(option("limiter", "false")));
+        return simpleDb;
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    // 20s, 500ms, 2m
+    private static Duration parseDuration(String value) {
+        if (value.endsWith("ms")) return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        if (value.endsWith("s")) return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        if (value.endsWith("m")) return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+}
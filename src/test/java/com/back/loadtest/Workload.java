@@ -0,0 +1,150 @@
+package com.back.loadtest;
+
+import com.back.Article;
+import com.back.SimpleDb;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+부하 테스트에서 실행할 Sql 작업 묶음과 비율
+
+mix 예) "select=60,in=10,scan=5,insert=10,update=10,tx=5" -> 가중치에 비례해 무작위로 고른다
+
+SimpleDb는 트랜잭션 커넥션을 하나만 가지므로 tx 작업은 SimpleDb를 따로 몇 개 만들어 번갈아 쓴다
+ */
+public class Workload {
+    public enum Operation {
+        SELECT("select"),    // PK 단건 조회
+        IN("in"),            // IN (?) 목록 조회
+        SCAN("scan"),        // 최근 글 범위 조회
+        INSERT("insert"),
+        UPDATE("update"),
+        TX("tx");            // 트랜잭션 안에서 INSERT + UPDATE 후 커밋
+
+        final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+
+        static Operation of(String key) {
+            for (Operation operation : values()) {
+                if (operation.key.equals(key)) return operation;
+            }
+            throw new IllegalArgumentException("알 수 없는 작업: " + key);
+        }
+    }
+
+    private static final int IN_SIZE = 20;
+    private static final int SCAN_LIMIT = 200;
+
+    private final SimpleDb simpleDb;
+    private final BlockingQueue<SimpleDb> txDbs;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final AtomicLong maxId;
+
+    public Workload(SimpleDb simpleDb, List<SimpleDb> txDbs, Map<Operation, Integer> mix, long seededRows) {
+        if (mix.isEmpty()) throw new IllegalArgumentException("실행할 작업이 없습니다");
+        this.simpleDb = simpleDb;
+        this.txDbs = new ArrayBlockingQueue<>(Math.max(1, txDbs.size()), false, txDbs);
+        this.operations = mix.keySet().toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += mix.get(operations[i]);
+            cumulativeWeights[i] = sum;
+        }
+        if (sum <= 0) throw new IllegalArgumentException("가중치의 합이 0입니다");
+        this.maxId = new AtomicLong(seededRows);
+    }
+
+    public static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) throw new IllegalArgumentException("mix 형식이 잘못되었습니다: " + part);
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight > 0) weights.put(Operation.of(kv[0].trim()), weight);
+        }
+        return weights;
+    }
+
+    public Operation next() {
+        int r = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (r < cumulativeWeights[i]) return operations[i];
+        }
+        return operations[operations.length - 1];
+    }
+
+    public void execute(Operation operation) throws InterruptedException {
+        switch (operation) {
+            case SELECT -> simpleDb.genSql()
+                    .append("SELECT * FROM article WHERE id = ?", randomId())
+                    .selectRow(Article.class);
+            case IN -> {
+                Object[] ids = new Object[IN_SIZE];
+                for (int i = 0; i < IN_SIZE; i++) ids[i] = randomId();
+                simpleDb.genSql()
+                        .append("SELECT * FROM article")
+                        .appendIn("WHERE id IN (?)", ids)
+                        .selectRows(Article.class);
+            }
+            case SCAN -> simpleDb.genSql()
+                    .append("SELECT id, title, createdDate FROM article")
+                    .append("WHERE id > ?", Math.max(0, randomId() - SCAN_LIMIT))
+                    .append("ORDER BY id ASC LIMIT ?", SCAN_LIMIT)
+                    .selectRows();
+            case INSERT -> insert(simpleDb);
+            case UPDATE -> update(simpleDb);
+            case TX -> {
+                SimpleDb txDb = txDbs.take();
+                try {
+                    txDb.startTransaction();
+                    try {
+                        insert(txDb);
+                        update(txDb);
+                        txDb.commit();
+                    } catch (RuntimeException e) {
+                        txDb.rollback();
+                        throw e;
+                    }
+                } finally {
+                    txDbs.put(txDb);
+                }
+            }
+        }
+    }
+
+    private void insert(SimpleDb db) {
+        long id = db.genSql()
+                .append("INSERT INTO article")
+                .append("SET createdDate = NOW()")
+                .append(", modifiedDate = NOW()")
+                .append(", title = ?", "부하" + ThreadLocalRandom.current().nextInt())
+                .append(", body = ?", "내용")
+                .append(", isBlind = ?", false)
+                .insert();
+        maxId.accumulateAndGet(id, Math::max);
+    }
+
+    private void update(SimpleDb db) {
+        db.genSql()
+                .append("UPDATE article")
+                .append("SET title = ?", "수정" + ThreadLocalRandom.current().nextInt())
+                .append(", modifiedDate = NOW()")
+                .append("WHERE id = ?", randomId())
+                .update();
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, Math.max(2, maxId.get() + 1));
+    }
+}
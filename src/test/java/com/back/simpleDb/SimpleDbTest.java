@@ -1,25 +1,66 @@
 package com.back.simpleDb;
 
+import com.back.Aggregation;
+import com.back.AggregationResult;
 import com.back.Article;
+import com.back.BulkLoadResult;
+import com.back.ChangeEvent;
+import com.back.ConcurrencyLimiter;
+import com.back.ConsistentHashRouter;
+import com.back.QueryCancelledException;
+import com.back.QueryContext;
+import com.back.QueryPriority;
+import com.back.QueryTimeoutException;
+import com.back.RangeRouter;
+import com.back.RowBuffer;
+import com.back.ShardedSimpleDb;
 import com.back.SimpleDb;
+import com.back.SimpleDbOverloadException;
+import com.back.SnowflakeIdGenerator;
 import com.back.Sql;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.*;
 //import org.springframework.test.context.jdbc.Sql; << test 전에 쓰는 애노테이션 - 작성해 줘야 함!
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @TestMethodOrder(MethodOrderer.MethodName.class)
 public class SimpleDbTest {
@@ -538,4 +579,949 @@ public class SimpleDbTest {
 
         assertThat(newCount).isEqualTo(oldCount + 1);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("changes, 커밋된 변경만 커밋 순서대로 발행")
+    public void t020() throws InterruptedException {
+        List<ChangeEvent> events = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(2);
+        AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+
+        simpleDb.changes().subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription.set(s);
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(ChangeEvent item) {
+                events.add(item);
+                latch.countDown();
+                subscription.get().request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        // 롤백된 변경은 발행되지 않는다
+        simpleDb.startTransaction();
+        simpleDb.genSql()
+                .append("INSERT INTO article ")
+                .append("(createdDate, modifiedDate, title, body)")
+                .appendIn("VALUES (NOW(), NOW(), ?)", "롤백 제목", "롤백 내용")
+                .insert();
+        simpleDb.rollback();
+
+        // 커밋하지 않고 닫은 트랜잭션의 변경도 발행되지 않는다
+        simpleDb.startTransaction();
+        simpleDb.genSql()
+                .append("DELETE FROM article WHERE id = ?", 1)
+                .delete();
+        simpleDb.close();
+
+        simpleDb.startTransaction();
+        long newId = simpleDb.genSql()
+                .append("INSERT INTO article ")
+                .append("(createdDate, modifiedDate, title, body)")
+                .appendIn("VALUES (NOW(), NOW(), ?)", "새 제목", "새 내용")
+                .insert();
+        simpleDb.genSql()
+                .append("UPDATE article")
+                .append("SET title = ?", "수정 제목")
+                .append("WHERE id = ?", newId)
+                .update();
+
+        // 커밋 전에는 아무것도 발행되지 않는다
+        assertThat(events).isEmpty();
+
+        simpleDb.commit();
+        simpleDb.close();
+
+        latch.await(5, TimeUnit.SECONDS);
+        subscription.get().cancel();
+
+        assertThat(events).hasSize(2);
+        assertThat(events.get(0).type()).isEqualTo(ChangeEvent.Type.INSERT);
+        assertThat(events.get(0).primaryKey()).isEqualTo(newId);
+        assertThat(events.get(0).after().get("title")).isEqualTo("새 제목");
+        assertThat(events.get(1).type()).isEqualTo(ChangeEvent.Type.UPDATE);
+        assertThat(events.get(1).before().get("title")).isEqualTo("새 제목");
+        assertThat(events.get(1).after().get("title")).isEqualTo("수정 제목");
+        assertThat(events.get(1).sequence()).isGreaterThan(events.get(0).sequence());
+    }
+
+    @Test
+    @DisplayName("aggregate, 파티션 병렬 집계")
+    public void t021() {
+        Aggregation aggregation = Aggregation.groupBy("isBlind").measure("id");
+
+        AggregationResult result = simpleDb.aggregate(aggregation, List.of(
+                simpleDb.genSql().append("SELECT isBlind, id FROM article WHERE id <= ?", 3),
+                simpleDb.genSql().append("SELECT isBlind, id FROM article WHERE id > ?", 3)
+        ));
+
+        assertThat(result.size()).isEqualTo(2);
+        assertThat(result.group(false).count()).isEqualTo(3);
+        assertThat(result.group(false).avg("id")).isEqualTo(2.0);
+        assertThat(result.group(true).sum("id")).isEqualTo(15.0);
+        assertThat(result.group(true).max("id")).isEqualTo(6.0);
+        assertThat(result.top(1, group -> group.sum("id")).get(0).key("isBlind")).isEqualTo(true);
+    }
+
+    @Test
+    @DisplayName("selectRows, body를 뺀 조회 후 lazy 로딩")
+    public void t022() {
+        List<Article> articles = simpleDb.genSql()
+                .append("SELECT id, title, createdDate, modifiedDate, isBlind")
+                .append("FROM article")
+                .append("ORDER BY id ASC")
+                .lazy("body")
+                .selectRows(Article.class);
+
+        assertThat(articles).hasSize(6);
+        assertThat(articles.get(0).getTitle()).isEqualTo("제목1");
+
+        // 처음 접근할 때 전체 body를 한 번에 불러온다
+        for (int i = 0; i < articles.size(); i++) {
+            assertThat(articles.get(i).getBody()).isEqualTo("내용%d".formatted(i + 1));
+        }
+    }
+
+    @Test
+    @DisplayName("timeout, 시간 예산을 넘긴 쿼리는 중단")
+    public void t023() {
+        long oldTimeouts = simpleDb.getMetrics().getTimeouts();
+        QueryContext context = QueryContext.withTimeout(Duration.ofMillis(300));
+
+        assertThatThrownBy(() -> simpleDb.genSql(context)
+                .append("SELECT SLEEP(3)")
+                .selectLong())
+                .isInstanceOf(QueryTimeoutException.class);
+
+        // 예산을 다 쓴 컨텍스트로는 더 실행하지 않는다
+        assertThatThrownBy(() -> simpleDb.genSql(context)
+                .append("SELECT COUNT(*) FROM article")
+                .selectLong())
+                .isInstanceOf(QueryTimeoutException.class);
+
+        assertThat(simpleDb.getMetrics().getTimeouts()).isEqualTo(oldTimeouts + 2);
+    }
+
+    @Test
+    @DisplayName("writeJson, 조회 결과를 JSON으로 바로 쓰기")
+    public void t024() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = simpleDb.genSql()
+                .append("SELECT id, title, createdDate, isBlind")
+                .append("FROM article")
+                .append("ORDER BY id ASC")
+                .writeJson(out);
+
+        JsonNode json = new ObjectMapper().readTree(out.toByteArray());
+
+        assertThat(rows).isEqualTo(6);
+        assertThat(json.size()).isEqualTo(6);
+        assertThat(json.get(0).get("id").asLong()).isEqualTo(1);
+        assertThat(json.get(0).get("title").asText()).isEqualTo("제목1");
+        assertThat(json.get(0).get("isBlind").isBoolean()).isTrue();
+        assertThat(json.get(3).get("isBlind").asBoolean()).isTrue();
+        assertThat(LocalDateTime.parse(json.get(0).get("createdDate").asText())).isNotNull();
+    }
+
+    @Test
+    @DisplayName("bulkLoad, 대량 적재")
+    public void t025() {
+        LocalDateTime now = LocalDateTime.now();
+        Iterator<Object[]> rows = IntStream.rangeClosed(1, 1000)
+                .mapToObj(no -> new Object[]{now, now, "대량%d".formatted(no), "내용\t%d\n".formatted(no), no % 2 == 0})
+                .iterator();
+
+        BulkLoadResult result = simpleDb.bulkLoad("article",
+                List.of("createdDate", "modifiedDate", "title", "body", "isBlind"), rows);
+
+        assertThat(result.rows()).isEqualTo(1000);
+        assertThat(simpleDb.genSql().append("SELECT COUNT(*) FROM article").selectLong()).isEqualTo(1006);
+        assertThat(simpleDb.genSql().append("SELECT body FROM article WHERE title = ?", "대량7").selectString())
+                .isEqualTo("내용\t7\n");
+        assertThat(simpleDb.genSql().append("SELECT isBlind FROM article WHERE title = ?", "대량8").selectBoolean())
+                .isTrue();
+    }
+
+    @Test
+    @DisplayName("동시 실행 한도, 한도가 차면 대기열 예산을 넘는 쿼리는 바로 거절")
+    public void t026() throws InterruptedException {
+        // 공유 simpleDb의 설정을 바꾸지 않도록 따로 만든다
+        SimpleDb limitedDb = new SimpleDb("localhost", "root", "123414", "simpleDb__test");
+        ConcurrencyLimiter limiter = limitedDb.getConcurrencyLimiter();
+        limiter.setEnabled(true); // 기본은 꺼져 있다
+        limiter.setLimits(1, 1, 1);
+        limiter.setMaxQueued(QueryPriority.BATCH, 0);
+        limiter.setMaxQueueWait(Duration.ofMillis(100));
+
+        Thread slow = Thread.ofVirtual().start(() -> limitedDb.genSql().append("SELECT SLEEP(1)").selectLong());
+        while (limitedDb.getMetrics().getInflight() == 0) Thread.sleep(10);
+
+        // 배치 대기열은 0개 -> 기다리지 않고 거절
+        assertThatThrownBy(() -> limitedDb.genSql()
+                .append("SELECT * FROM article")
+                .selectRowBuffer())
+                .isInstanceOf(SimpleDbOverloadException.class);
+
+        // 일반 조회는 대기하다 maxQueueWait를 넘으면 거절
+        assertThatThrownBy(() -> limitedDb.genSql()
+                .append("SELECT COUNT(*) FROM article")
+                .selectLong())
+                .isInstanceOf(SimpleDbOverloadException.class);
+
+        slow.join();
+
+        assertThat(limitedDb.getMetrics().getRejections()).isEqualTo(2);
+        assertThat(limitedDb.getMetrics().getInflight()).isEqualTo(0);
+        assertThat(limitedDb.genSql().append("SELECT COUNT(*) FROM article").selectLong()).isEqualTo(6);
+    }
+
+    @Test
+    @DisplayName("커넥션 풀, warmUp으로 미리 채우고 반납된 커넥션을 재사용")
+    public void t027() {
+        SimpleDb pooledDb = new SimpleDb("localhost", "root", "123414", "simpleDb__test");
+        pooledDb.setConnectionProperty("useServerPrepStmts", "true");
+        pooledDb.setConnectionProperty("cachePrepStmts", "true");
+        pooledDb.setPoolSize(2, Duration.ofSeconds(1));
+
+        Duration elapsed = pooledDb.warmUp(2, List.of("SELECT * FROM article WHERE id = ?"));
+
+        assertThat(elapsed).isPositive();
+        assertThat(pooledDb.getMetrics().getWarmUpNanos()).isEqualTo(elapsed.toNanos());
+        assertThat(pooledDb.getMetrics().getPoolIdle()).isEqualTo(2);
+        // 워밍업 조회는 Sql을 거치지 않으므로 쿼리 지표에 잡히지 않는다
+        assertThat(pooledDb.getMetrics().getQueries()).isEqualTo(0);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(pooledDb.genSql().append("SELECT COUNT(*) FROM article").selectLong()).isEqualTo(6);
+        }
+
+        // 트랜잭션이 끝나지 않은 채 반납된 커넥션은 롤백된다
+        pooledDb.startTransaction();
+        pooledDb.genSql().append("DELETE FROM article").delete();
+        pooledDb.close();
+
+        assertThat(pooledDb.getMetrics().getPoolActive()).isEqualTo(0);
+        assertThat(pooledDb.getMetrics().getPoolIdle()).isEqualTo(2);
+        assertThat(pooledDb.genSql().append("SELECT COUNT(*) FROM article").selectLong()).isEqualTo(6);
+
+        pooledDb.shutdown();
+        assertThat(pooledDb.getMetrics().getPoolIdle()).isEqualTo(0);
+
+        // 풀이 없어도 statements를 무시하지 않고 한 번 쓰는 커넥션에서 prepare 해 본다
+        long oldQueries = simpleDb.getMetrics().getQueries();
+        assertThat(simpleDb.warmUp(1, List.of("SELECT * FROM article WHERE id = ?"))).isPositive();
+        assertThat(simpleDb.getMetrics().getQueries()).isEqualTo(oldQueries);
+    }
+
+    @Test
+    @DisplayName("forEachRow, 큰 컬럼을 Reader로 읽기 / 쿼리별 압축과 전송량")
+    public void t028() {
+        SimpleDb wireDb = new SimpleDb("localhost", "root", "123414", "simpleDb__test");
+        wireDb.setWireMetricsEnabled(true);
+
+        String longBody = "긴 내용 ".repeat(5_000); // TEXT 최대 64KB 안에서
+        wireDb.genSql()
+                .append("UPDATE article SET body = ? WHERE id = ?", longBody, 1)
+                .update();
+
+        StringWriter body = new StringWriter();
+        Sql plain = wireDb.genSql().append("SELECT id, body FROM article WHERE id = ?", 1);
+        long rows = plain.forEachRow(row -> {
+            try (Reader reader = row.getReader("body")) {
+                reader.transferTo(body);
+            }
+        });
+
+        assertThat(rows).isEqualTo(1);
+        assertThat(body.toString()).isEqualTo(longBody);
+        assertThat(plain.getBytesReceived()).isGreaterThan(longBody.length());
+
+        Sql compressed = wireDb.genSql()
+                .append("SELECT id, body FROM article WHERE id = ?", 1)
+                .compression(true);
+        compressed.forEachRow(row -> row.getReader("body").transferTo(Writer.nullWriter()));
+
+        // 같은 문자열이 반복되는 본문이라 압축하면 훨씬 적게 받는다
+        assertThat(compressed.getBytesReceived()).isLessThan(plain.getBytesReceived() / 10);
+        assertThat(wireDb.getMetrics().getBytesReceived())
+                .isGreaterThanOrEqualTo(plain.getBytesReceived() + compressed.getBytesReceived());
+    }
+
+    @Test
+    @DisplayName("selectRowBuffer, 타입별 값 그대로 읽기")
+    public void t029() {
+        LocalDateTime createdDate = simpleDb.genSql()
+                .append("SELECT createdDate FROM article WHERE id = ?", 4)
+                .selectDatetime();
+
+        try (RowBuffer rows = simpleDb.genSql()
+                .append("SELECT id, NULL AS nothing, isBlind, createdDate,")
+                .append("CAST(12.34 AS DECIMAL(10, 2)) AS price, body")
+                .append("FROM article")
+                .append("ORDER BY id ASC")
+                .selectRowBuffer()) {
+
+            assertThat(rows.size()).isEqualTo(6);
+            assertThat(rows.isSpilled()).isFalse();
+
+            RowBuffer.Row row = rows.get(3);
+            assertThat(row.getLong("id")).isEqualTo(4);
+            assertThat(row.isNull("nothing")).isTrue();
+            assertThat(row.getObject("nothing")).isNull();
+            assertThat(row.getBoolean("isBlind")).isTrue();
+            assertThat(rows.get(0).getBoolean("isBlind")).isFalse();
+            assertThat(row.getDateTime("createdDate")).isEqualTo(createdDate);
+            assertThat(row.getBigDecimal("price")).isEqualByComparingTo(new BigDecimal("12.34"));
+            assertThat(row.getString("body")).isEqualTo("내용4");
+        }
+    }
+
+    @Test
+    @DisplayName("selectRowBuffer, 메모리 한도를 넘으면 임시 파일로 스필")
+    public void t030() {
+        SimpleDb spillDb = new SimpleDb("localhost", "root", "123414", "simpleDb__test");
+        spillDb.setRowBufferMemoryLimit(64); // 한 행도 다 담지 못하는 크기
+
+        RowBuffer rows = spillDb.genSql()
+                .append("SELECT id, title, body FROM article ORDER BY id ASC")
+                .selectRowBuffer();
+        Path spillFile = rows.getSpillFile();
+
+        assertThat(rows.isSpilled()).isTrue();
+        assertThat(spillFile).exists();
+
+        // 임의 접근
+        assertThat(rows.get(5).getString("title")).isEqualTo("제목6");
+        assertThat(rows.get(0).getLong("id")).isEqualTo(1);
+
+        // 두 번 순회해도 같은 결과
+        List<String> first = new ArrayList<>();
+        for (RowBuffer.Row row : rows) first.add(row.getString("title"));
+        List<String> second = new ArrayList<>();
+        for (RowBuffer.Row row : rows) second.add(row.getString("body"));
+
+        assertThat(first).containsExactly("제목1", "제목2", "제목3", "제목4", "제목5", "제목6");
+        assertThat(second).containsExactly("내용1", "내용2", "내용3", "내용4", "내용5", "내용6");
+
+        rows.close();
+        assertThat(spillFile).doesNotExist();
+
+        // 닫은 뒤에는 NPE가 아니라 닫혔다는 예외
+        assertThatThrownBy(() -> rows.get(0)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(rows::size).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("selectBoolean / 컬럼 타입 캐시, 같은 SQL 모양은 읽는 방법을 재사용")
+    public void t031() {
+        // 숫자 타입은 0이 아니면 true
+        assertThat(simpleDb.genSql().append("SELECT 1.0e0").selectBoolean()).isTrue();
+        assertThat(simpleDb.genSql().append("SELECT 0.0e0").selectBoolean()).isFalse();
+        assertThat(simpleDb.genSql().append("SELECT CAST(2.5 AS DECIMAL(3, 1))").selectBoolean()).isTrue();
+        assertThat(simpleDb.genSql().append("SELECT 'true'").selectBoolean()).isTrue();
+
+        // 같은 SQL 모양이면 파라미터가 달라도 캐시된 컬럼 타입으로 읽는다
+        assertThat(simpleDb.genSql().append("SELECT isBlind FROM article WHERE id = ?", 1).selectBoolean()).isFalse();
+        assertThat(simpleDb.genSql().append("SELECT isBlind FROM article WHERE id = ?", 4).selectBoolean()).isTrue();
+
+        // SELECT * 의 컬럼이 바뀌면 캐시를 다시 만든다
+        Map<String, Object> before = simpleDb.genSql().append("SELECT * FROM article WHERE id = ?", 1).selectRow();
+        simpleDb.run("ALTER TABLE article ADD COLUMN hit INT NOT NULL DEFAULT 7");
+        try {
+            Map<String, Object> after = simpleDb.genSql().append("SELECT * FROM article WHERE id = ?", 1).selectRow();
+
+            assertThat(before).doesNotContainKey("hit");
+            assertThat(after.get("hit")).isEqualTo(7);
+            assertThat(after.get("title")).isEqualTo("제목1");
+        } finally {
+            simpleDb.run("ALTER TABLE article DROP COLUMN hit");
+        }
+    }
+
+    @Test
+    @DisplayName("샤드 라우터 / Snowflake id, 고르게 나누고 같은 키는 같은 샤드, id는 유일하고 증가")
+    public void t032() {
+        // consistent hashing: 연속된 id도 고르게 퍼지고, 같은 키는 항상 같은 샤드
+        ConsistentHashRouter router = new ConsistentHashRouter(4);
+        int[] counts = new int[4];
+        for (long id = 1; id <= 40_000; id++) counts[router.shardFor(id)]++;
+        for (int count : counts) assertThat(count).isBetween(7_000, 13_000);
+
+        ConsistentHashRouter sameRouter = new ConsistentHashRouter(4);
+        for (long id = 1; id <= 1_000; id++) assertThat(sameRouter.shardFor(id)).isEqualTo(router.shardFor(id));
+        assertThat(router.shardFor("user-1")).isEqualTo(sameRouter.shardFor("user-1"));
+
+        // 샤드를 하나 늘리면 옮겨지는 키는 일부이고, 모두 새 샤드로만 간다
+        ConsistentHashRouter grown = new ConsistentHashRouter(5);
+        int moved = 0;
+        for (long id = 1; id <= 40_000; id++) {
+            int before = router.shardFor(id);
+            int after = grown.shardFor(id);
+            if (before == after) continue;
+            moved++;
+            assertThat(after).isEqualTo(4);
+        }
+        assertThat(moved).isBetween(4_000, 12_000);
+        assertThatThrownBy(() -> router.shardFor(null)).isInstanceOf(IllegalArgumentException.class);
+
+        // 범위 라우터: 구간 시작값은 그 구간에 속한다
+        RangeRouter rangeRouter = new RangeRouter().range(0, 0).range(1_000_000, 1).range(2_000_000, 2);
+        assertThat(rangeRouter.shardCount()).isEqualTo(3);
+        assertThat(rangeRouter.shardFor(0)).isEqualTo(0);
+        assertThat(rangeRouter.shardFor(999_999)).isEqualTo(0);
+        assertThat(rangeRouter.shardFor(1_000_000)).isEqualTo(1);
+        assertThat(rangeRouter.shardFor(1_999_999L)).isEqualTo(1);
+        assertThat(rangeRouter.shardFor(2_000_000)).isEqualTo(2);
+        assertThat(rangeRouter.shardFor(Long.MAX_VALUE)).isEqualTo(2);
+        assertThatThrownBy(() -> rangeRouter.shardFor(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> rangeRouter.shardFor("1")).isInstanceOf(IllegalArgumentException.class);
+
+        // Snowflake: 시계가 5000번 호출마다 1ms 가도록 고정 -> 첫 ms에 시퀀스 4096개를 다 쓰고 다음 ms로 넘어간다
+        AtomicLong calls = new AtomicLong();
+        long base = System.currentTimeMillis();
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3, () -> base + calls.incrementAndGet() / 5000);
+
+        Set<Long> ids = new HashSet<>();
+        long first = generator.nextId();
+        long previous = first;
+        ids.add(first);
+        for (int i = 1; i < 10_000; i++) {
+            long id = generator.nextId();
+            assertThat(id).isGreaterThan(previous);
+            assertThat((id >>> 12) & 0x3FF).isEqualTo(3); // 노드 비트
+            previous = id;
+            ids.add(id);
+        }
+        assertThat(ids).hasSize(10_000);
+        assertThat(ids.stream().filter(id -> id >>> 22 == first >>> 22).count()).isEqualTo(4096);
+
+        // 시계가 뒤로 가도 id는 줄어들지 않는다
+        Iterator<Long> times = List.of(base + 10, base + 5, base + 5, base + 11).iterator();
+        SnowflakeIdGenerator skewed = new SnowflakeIdGenerator(1, times::next);
+        long id1 = skewed.nextId();
+        long id2 = skewed.nextId();
+        long id3 = skewed.nextId();
+        long id4 = skewed.nextId();
+        assertThat(List.of(id1, id2, id3, id4)).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    @DisplayName("scatterGather, 두 스키마를 샤드로 써서 샤드별 결과를 정렬 순서대로 합치고 limit 적용")
+    public void t033() {
+        simpleDb.run("CREATE DATABASE IF NOT EXISTS simpleDb__test_shard1");
+        ShardedSimpleDb shardedDb = new ShardedSimpleDb(
+                List.of(new SimpleDb("localhost", "root", "123414", "simpleDb__test"),
+                        new SimpleDb("localhost", "root", "123414", "simpleDb__test_shard1")),
+                new ConsistentHashRouter(2),
+                new SnowflakeIdGenerator(1));
+
+        try {
+            shardedDb.runAll("DROP TABLE IF EXISTS sharded_article");
+            shardedDb.runAll("""
+                    CREATE TABLE sharded_article (
+                        id BIGINT NOT NULL,
+                        PRIMARY KEY(id),
+                        title VARCHAR(100) NOT NULL
+                    )
+                    """);
+
+            for (long id = 1; id <= 20; id++) {
+                shardedDb.genSql(id).append("INSERT INTO sharded_article SET id = ?, title = ?", id, "제목" + id).insert();
+            }
+
+            // 각 행은 라우터가 고른 샤드 하나에만 있다
+            int[] rowsPerShard = new int[2];
+            for (long id = 1; id <= 20; id++) {
+                for (int shard = 0; shard < 2; shard++) {
+                    long count = shardedDb.shardAt(shard).genSql()
+                            .append("SELECT COUNT(*) FROM sharded_article WHERE id = ?", id)
+                            .selectLong();
+                    boolean routed = shardedDb.shard(id) == shardedDb.shardAt(shard);
+                    assertThat(count).isEqualTo(routed ? 1 : 0);
+                    rowsPerShard[shard] += (int) count;
+                }
+            }
+            assertThat(rowsPerShard[0]).isPositive();
+            assertThat(rowsPerShard[1]).isPositive();
+
+            // 샤드마다 상위 7개씩 가져와 합친 뒤 전체 상위 7개
+            Comparator<Map<String, Object>> idDesc =
+                    Comparator.comparing((Map<String, Object> row) -> (Long) row.get("id")).reversed();
+            List<Map<String, Object>> top = shardedDb.selectRows(idDesc, 7,
+                    "SELECT id, title FROM sharded_article ORDER BY id DESC LIMIT 7");
+            assertThat(top).extracting(row -> row.get("id"))
+                    .containsExactly(20L, 19L, 18L, 17L, 16L, 15L, 14L);
+            assertThat(top.get(0).get("title")).isEqualTo("제목20");
+
+            // limit이 0 이하면 전부, 정렬 순서는 유지
+            List<Long> all = shardedDb.scatterGather(
+                    sql -> sql.append("SELECT id FROM sharded_article ORDER BY id").selectLongs(),
+                    Comparator.naturalOrder(), 0);
+            assertThat(all).hasSize(20).isSorted();
+
+            // order가 null이면 샤드 순서대로 이어 붙이기만 한다
+            List<Long> concatenated = shardedDb.scatterGather(
+                    sql -> sql.append("SELECT id FROM sharded_article ORDER BY id").selectLongs(), null, 0);
+            assertThat(concatenated).hasSize(20).containsExactlyInAnyOrderElementsOf(all);
+        } finally {
+            shardedDb.runAll("DROP TABLE IF EXISTS sharded_article");
+            shardedDb.close();
+            simpleDb.run("DROP DATABASE IF EXISTS simpleDb__test_shard1");
+        }
+    }
+
+    @Test
+    @DisplayName("single-flight, 켠 조회만 같은 조회가 동시에 들어오면 한 번만 실행하고 호출자마다 복사본")
+    public void t034() throws InterruptedException {
+        int callers = 8;
+        String sql = "SELECT * FROM article WHERE id = ?";
+        SimpleDb pooledDb = singleConnectionDb();
+
+        try {
+            // 커넥션을 기다리는 leader의 조회에 나머지가 합류한다
+            Thread holder = holdOnlyConnection(pooledDb, 0.5);
+            long oldQueries = pooledDb.getMetrics().getQueries();
+            long oldCoalesced = pooledDb.getMetrics().getCoalesced();
+            List<Article> articles = runConcurrently(callers,
+                    () -> pooledDb.genSql().singleFlight(true).append(sql, 1).selectRow(Article.class));
+            holder.join();
+
+            assertThat(pooledDb.getMetrics().getQueries()).isEqualTo(oldQueries + 1);
+            assertThat(pooledDb.getMetrics().getCoalesced()).isEqualTo(oldCoalesced + callers - 1);
+            assertThat(articles).hasSize(callers).allSatisfy(article -> assertThat(article.getTitle()).isEqualTo("제목1"));
+
+            // 한 호출자가 결과를 바꿔도 다른 호출자의 결과는 그대로
+            articles.get(0).setTitle("바뀐 제목");
+            assertThat(articles).doesNotHaveDuplicates();
+            assertThat(articles.subList(1, callers)).allSatisfy(article -> assertThat(article.getTitle()).isEqualTo("제목1"));
+
+            holder = holdOnlyConnection(pooledDb, 0.5);
+            oldQueries = pooledDb.getMetrics().getQueries();
+            List<Map<String, Object>> rows = runConcurrently(callers,
+                    () -> pooledDb.genSql().singleFlight(true).append(sql, 1).selectRow());
+            holder.join();
+
+            assertThat(pooledDb.getMetrics().getQueries()).isEqualTo(oldQueries + 1);
+            rows.get(0).put("title", "바뀐 제목");
+            assertThat(rows.subList(1, callers)).allSatisfy(row -> assertThat(row.get("title")).isEqualTo("제목1"));
+
+            // 기본은 꺼져 있어 각자 실행한다
+            holder = holdOnlyConnection(pooledDb, 0.3);
+            oldQueries = pooledDb.getMetrics().getQueries();
+            runConcurrently(callers, () -> pooledDb.genSql().append(sql, 1).selectRow());
+            holder.join();
+
+            assertThat(pooledDb.getMetrics().getQueries()).isEqualTo(oldQueries + callers);
+
+            // 끝난 조회는 캐싱하지 않는다
+            oldQueries = pooledDb.getMetrics().getQueries();
+            pooledDb.genSql().singleFlight(true).append(sql, 1).selectRow();
+            assertThat(pooledDb.getMetrics().getQueries()).isEqualTo(oldQueries + 1);
+        } finally {
+            pooledDb.shutdown();
+        }
+
+        // 이미 DB로 보낸 조회에는 합류하지 않는다 -> 호출 전에 커밋한 쓰기가 결과에 보인다
+        String slowSql = "SELECT * FROM article WHERE id = ? AND SLEEP(0.5) = 0";
+        long oldQueries = simpleDb.getMetrics().getQueries();
+        CompletableFuture<Map<String, Object>> running = CompletableFuture.supplyAsync(
+                () -> simpleDb.genSql().singleFlight(true).append(slowSql, 1).selectRow());
+        while (simpleDb.getMetrics().getQueries() == oldQueries) Thread.sleep(1);
+
+        simpleDb.run("UPDATE article SET title = ? WHERE id = ?", "새 제목", 1);
+        Map<String, Object> afterWrite = simpleDb.genSql().singleFlight(true).append(slowSql, 1).selectRow();
+
+        assertThat(afterWrite.get("title")).isEqualTo("새 제목");
+        assertThat(running.join().get("title")).isEqualTo("제목1");
+    }
+
+    @Test
+    @DisplayName("single-flight, leader가 시간 초과되면 follower는 직접 실행 / 기다리는 중에도 자기 cancel()로 중단")
+    public void t035() throws Exception {
+        String sql = "SELECT * FROM article WHERE id = ? AND SLEEP(1) = 0";
+        SimpleDb pooledDb = singleConnectionDb();
+
+        try (ExecutorService executor = Executors.newCachedThreadPool()) {
+            // leader는 300ms 예산으로 시간 초과, 예산이 없는 follower는 leader를 기다리다 직접 조회
+            Thread holder = holdOnlyConnection(pooledDb, 0.3);
+            long oldQueries = pooledDb.getMetrics().getQueries();
+            var leader = executor.submit(() -> pooledDb.genSql().singleFlight(true)
+                    .timeout(Duration.ofMillis(300)).append(sql, 1).selectRow());
+            Thread.sleep(50); // leader가 먼저 들어와 커넥션을 기다린다
+
+            Map<String, Object> row = pooledDb.genSql().singleFlight(true).append(sql, 1).selectRow();
+
+            assertThat(row.get("title")).isEqualTo("제목1");
+            assertThatThrownBy(leader::get).hasCauseInstanceOf(QueryTimeoutException.class);
+            assertThat(pooledDb.getMetrics().getQueries()).isEqualTo(oldQueries + 2);
+            holder.join();
+
+            // follower가 기다리는 중에 cancel()하면 leader가 끝날 때까지 기다리지 않는다
+            holder = holdOnlyConnection(pooledDb, 0.5);
+            var slowLeader = executor.submit(() -> pooledDb.genSql().singleFlight(true).append(sql, 2).selectRow());
+            Thread.sleep(50);
+
+            Sql followerSql = pooledDb.genSql().singleFlight(true).append(sql, 2);
+            var follower = executor.submit(followerSql::selectRow);
+            Thread.sleep(100);
+            followerSql.cancel();
+
+            assertThatThrownBy(() -> follower.get(200, TimeUnit.MILLISECONDS))
+                    .hasCauseInstanceOf(QueryCancelledException.class);
+            assertThat(slowLeader.get().get("title")).isEqualTo("제목2");
+            holder.join();
+        } finally {
+            pooledDb.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("writeJson, 중간에 실패하면 닫는 괄호를 붙이지 않아 잘린 JSON이 된다")
+    public void t036() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // 3번째 행에서 WHERE 절 평가가 실패한다 (1, 2번 행은 이미 쓰인 뒤)
+        assertThatThrownBy(() -> simpleDb.genSql()
+                .append("SELECT id, title")
+                .append("FROM article")
+                .append("WHERE JSON_EXTRACT(IF(id = 3, 'not json', '{}'), '$') IS NOT NULL")
+                .append("ORDER BY id ASC")
+                .writeJson(out))
+                .isInstanceOf(RuntimeException.class);
+
+        String json = out.toString(StandardCharsets.UTF_8);
+        assertThat(json).startsWith("[{").doesNotEndWith("]");
+        assertThatThrownBy(() -> new ObjectMapper().readTree(json)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    @DisplayName("bulkLoad, 건너뛴 행이 있으면 조용히 넘어가지 않고 전부 되돌린 뒤 예외")
+    public void t037() {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> columns = List.of("id", "createdDate", "modifiedDate", "title", "body", "isBlind");
+
+        // id 1은 이미 있다 -> LOAD DATA LOCAL은 그 행을 경고만 남기고 건너뛴다
+        List<Object[]> duplicated = List.of(
+                new Object[]{100, now, now, "대량100", "내용100", false},
+                new Object[]{1, now, now, "대량1", "내용1", false},
+                new Object[]{101, now, now, "대량101", "내용101", true});
+
+        assertThatThrownBy(() -> simpleDb.bulkLoad("article", columns, duplicated.iterator()))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Duplicate entry");
+
+        // 앞에 들어간 100번 행도 남지 않는다
+        assertThat(simpleDb.genSql().append("SELECT COUNT(*) FROM article").selectLong()).isEqualTo(6);
+        assertThat(simpleDb.genSql().append("SELECT title FROM article WHERE id = ?", 1).selectString())
+                .isEqualTo("제목1");
+    }
+
+    @Test
+    @DisplayName("SimpleDb 없이 커넥션만으로 만든 Sql도 실행할 수 있다")
+    public void t038() throws SQLException {
+        Connection connection = DriverManager.getConnection(
+                "jdbc:mysql://localhost/simpleDb__test?serverTimezone=Asia/Seoul", "root", "123414");
+
+        Long count = new Sql(connection, true).append("SELECT COUNT(*) FROM article").selectLong();
+
+        assertThat(count).isEqualTo(6);
+        assertThat(connection.isClosed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("changes, 정확히 캡처할 수 없는 쓰기는 틀린 이벤트를 발행하지 않고 건너뛴다")
+    public void t039() throws InterruptedException {
+        List<ChangeEvent> events = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+
+        simpleDb.changes().subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription.set(s);
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ChangeEvent item) {
+                events.add(item);
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        // SET 안 서브쿼리의 WHERE가 아니라 맨 바깥 WHERE의 파라미터(id = 2)로 before를 읽는다
+        simpleDb.genSql()
+                .append("UPDATE article")
+                .append("SET title = (SELECT ? FROM DUAL WHERE ? = 1)", "서브쿼리 제목", 1)
+                .append("WHERE id = ?", 2)
+                .update();
+
+        // 키를 직접 지정한 INSERT는 생성된 키가 없어도 그 키로 발행된다
+        simpleDb.genSql()
+                .append("INSERT INTO article")
+                .append("SET id = ?,", 100)
+                .append("createdDate = NOW(), modifiedDate = NOW(),")
+                .append("title = ?, `body` = ?", "직접 키", "내용100")
+                .insert();
+
+        // 아래 쓰기는 실행은 되지만 정확한 이벤트를 만들 수 없으므로 발행되지 않는다
+        simpleDb.genSql()
+                .append("INSERT INTO article")
+                .append("SET id = ?, createdDate = NOW(), modifiedDate = NOW(), title = ?, `body` = ?",
+                        1, "중복", "중복")
+                .append("ON DUPLICATE KEY UPDATE title = ?", "중복 갱신")
+                .insert();
+        simpleDb.genSql()
+                .append("INSERT INTO article (createdDate, modifiedDate, title, `body`)")
+                .append("SELECT createdDate, modifiedDate, title, `body` FROM article WHERE id = ?", 3)
+                .insert();
+        simpleDb.genSql()
+                .append("UPDATE article")
+                .append("SET id = ?", 200)
+                .append("WHERE id = ?", 5)
+                .update();
+
+        // 발행 순서가 보장되므로 마지막 DELETE 이벤트까지 받으면 앞의 쓰기는 모두 처리된 것이다
+        simpleDb.genSql()
+                .append("DELETE FROM article WHERE id = ?", 4)
+                .delete();
+
+        latch.await(5, TimeUnit.SECONDS);
+        subscription.get().cancel();
+
+        assertThat(events).hasSize(3);
+        assertThat(events.get(0).type()).isEqualTo(ChangeEvent.Type.UPDATE);
+        assertThat(events.get(0).primaryKey()).isEqualTo(2L);
+        assertThat(events.get(0).before().get("title")).isEqualTo("제목2");
+        assertThat(events.get(0).after().get("title")).isEqualTo("서브쿼리 제목");
+
+        assertThat(events.get(1).type()).isEqualTo(ChangeEvent.Type.INSERT);
+        assertThat(events.get(1).primaryKey()).isEqualTo(100L);
+        assertThat(events.get(1).after().get("title")).isEqualTo("직접 키");
+
+        assertThat(events.get(2).type()).isEqualTo(ChangeEvent.Type.DELETE);
+        assertThat(events.get(2).primaryKey()).isEqualTo(4L);
+
+        // 건너뛴 쓰기도 실제로는 반영되었다
+        assertThat(simpleDb.genSql().append("SELECT title FROM article WHERE id = ?", 1).selectString())
+                .isEqualTo("중복 갱신");
+        assertThat(simpleDb.genSql().append("SELECT COUNT(*) FROM article WHERE title = ?", "제목3").selectLong())
+                .isEqualTo(2);
+        assertThat(simpleDb.genSql().append("SELECT COUNT(*) FROM article WHERE id = ?", 200).selectLong())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("changes, 버퍼가 가득 찬 느린 구독자가 있어도 쓰기는 멈추지 않고 넘치는 이벤트만 버린다")
+    public void t040() throws Exception {
+        List<ChangeEvent> events = new CopyOnWriteArrayList<>();
+        AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+        CountDownLatch subscribed = new CountDownLatch(1);
+
+        // 처음 1건만 요청하고 더 이상 요청하지 않는 구독자
+        simpleDb.changes().subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription.set(s);
+                s.request(1);
+                subscribed.countDown();
+            }
+
+            @Override
+            public void onNext(ChangeEvent item) {
+                events.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        subscribed.await(5, TimeUnit.SECONDS);
+
+        long oldDropped = simpleDb.getMetrics().getDroppedChanges();
+
+        // 구독자 버퍼(256)보다 많이 쓴다, 발행이 쓰기를 붙잡으면 여기서 끝나지 않는다
+        CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 300; i++) {
+                simpleDb.genSql()
+                        .append("UPDATE article")
+                        .append("SET title = ?", "수정 " + i)
+                        .append("WHERE id = ?", 1)
+                        .update();
+            }
+        }).get(30, TimeUnit.SECONDS);
+
+        subscription.get().cancel();
+
+        assertThat(simpleDb.getMetrics().getDroppedChanges() - oldDropped).isGreaterThan(0);
+        assertThat(events).hasSizeLessThanOrEqualTo(1);
+        assertThat(simpleDb.genSql().append("SELECT title FROM article WHERE id = ?", 1).selectString())
+                .isEqualTo("수정 299");
+    }
+
+    @Test
+    @DisplayName("lazy, 서브쿼리/JOIN/여러 테이블 SELECT는 body를 읽을 테이블을 추측하지 않고 예외")
+    public void t041() {
+        List<String> selects = List.of(
+                "SELECT id, title FROM (SELECT id, title FROM article WHERE isBlind = 0) recent",
+                "SELECT a.id, a.title FROM article a JOIN article b ON b.id = a.id",
+                "SELECT a.id, a.title FROM article a, article b WHERE b.id = a.id");
+
+        for (String select : selects) {
+            assertThatThrownBy(() -> simpleDb.genSql()
+                    .append(select)
+                    .lazy("body")
+                    .selectRows(Article.class))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("테이블 하나만");
+        }
+
+        // 테이블 하나면 별칭이 있어도 된다
+        List<Article> articles = simpleDb.genSql()
+                .append("SELECT a.id, a.title FROM article a WHERE a.id IN (?, ?)", 1, 2)
+                .lazy("body")
+                .selectRows(Article.class);
+        assertThat(articles).extracting(Article::getBody).containsExactlyInAnyOrder("내용1", "내용2");
+    }
+
+    @Test
+    @DisplayName("aggregate, 정수 그룹 키는 Integer로도 찾고 정수/DECIMAL 합은 정확하게 누적")
+    public void t042() {
+        // id(INT UNSIGNED) 키는 Long으로 모이지만 Integer로 조회해도 찾는다
+        AggregationResult byId = simpleDb.genSql()
+                .append("SELECT id FROM article")
+                .aggregate(Aggregation.groupBy("id").measure("id"));
+        assertThat(byId.group(1)).isNotNull();
+        assertThat(byId.group(1).sumLong("id")).isEqualTo(1);
+
+        AggregationResult result = simpleDb.genSql()
+                .append("SELECT 1 AS g, 9007199254740993 AS v, 0.1 AS d")
+                .append("UNION ALL SELECT 1, 1, 0.2")
+                .aggregate(Aggregation.groupBy("g").measure("v", "d"));
+
+        // double로 더했다면 2^53 + 2를 표현하지 못해 9007199254740992가 된다
+        assertThat(result.group(1).sumLong("v")).isEqualTo(9007199254740994L);
+        // double로 더했다면 0.30000000000000004
+        assertThat(result.group(1).sumDecimal("d")).isEqualByComparingTo("0.3");
+        assertThat(result.group(1).sum("d")).isEqualTo(0.3);
+        assertThat(result.group(1).avg("d")).isEqualTo(0.15);
+
+        // 정수 합이 long을 넘으면 조용히 틀린 값 대신 예외
+        assertThatThrownBy(() -> simpleDb.genSql()
+                .append("SELECT 9223372036854775807 AS v UNION ALL SELECT 1")
+                .aggregate(Aggregation.all().measure("v")))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    @DisplayName("writeJson(JsonGenerator), 다 쓰면 넘긴 generator의 AUTO_CLOSE_JSON_CONTENT를 원래대로 되돌린다")
+    public void t043() throws IOException {
+        JsonGenerator gen = new ObjectMapper().getFactory().createGenerator(new StringWriter());
+        assertThat(gen.isEnabled(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT)).isTrue();
+
+        long rows = simpleDb.genSql()
+                .append("SELECT id, title FROM article ORDER BY id ASC")
+                .writeJson(gen);
+
+        assertThat(rows).isEqualTo(6);
+        assertThat(gen.isEnabled(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT)).isTrue();
+
+        // 중간에 실패하면 꺼진 채로 남아 호출자가 닫아도 닫는 괄호가 붙지 않는다
+        StringWriter out = new StringWriter();
+        JsonGenerator failing = new ObjectMapper().getFactory().createGenerator(out);
+        assertThatThrownBy(() -> simpleDb.genSql()
+                .append("SELECT id, title")
+                .append("FROM article")
+                .append("WHERE JSON_EXTRACT(IF(id = 3, 'not json', '{}'), '$') IS NOT NULL")
+                .append("ORDER BY id ASC")
+                .writeJson(failing))
+                .isInstanceOf(RuntimeException.class);
+        assertThat(failing.isEnabled(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT)).isFalse();
+
+        failing.close();
+        assertThat(out.toString()).startsWith("[{").doesNotEndWith("]");
+    }
+
+    @Test
+    @DisplayName("bulkLoad, 행을 인코딩하다 실패하면 파일을 깨끗이 끝내고 전부 되돌린 뒤 그 예외를 던진다")
+    public void t044() {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> columns = List.of("id", "createdDate", "modifiedDate", "title", "body", "isBlind");
+
+        // 두 번째 행은 값이 모자라다 -> 첫 행을 보낸 뒤 인코딩 중에 실패
+        List<Object[]> broken = List.of(
+                new Object[]{100, now, now, "대량100", "내용100", false},
+                new Object[]{101, now, now, "대량101"},
+                new Object[]{102, now, now, "대량102", "내용102", true});
+
+        assertThatThrownBy(() -> simpleDb.bulkLoad("article", columns, broken.iterator()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("컬럼 수");
+
+        // 실패 전에 보낸 100번 행도 남지 않는다
+        assertThat(simpleDb.genSql().append("SELECT COUNT(*) FROM article").selectLong()).isEqualTo(6);
+
+        // 다음 적재는 정상
+        BulkLoadResult result = simpleDb.bulkLoad("article", columns, List.<Object[]>of(
+                new Object[]{100, now, now, "대량100", "내용100", false}).iterator());
+        assertThat(result.rows()).isEqualTo(1);
+        assertThat(simpleDb.genSql().append("SELECT COUNT(*) FROM article").selectLong()).isEqualTo(7);
+    }
+
+    // 커넥션 1개짜리 풀을 쓰는 SimpleDb (커넥션을 잡아 두면 다른 조회가 DB로 가기 전에 기다리게 할 수 있다)
+    private static SimpleDb singleConnectionDb() {
+        SimpleDb pooledDb = new SimpleDb("localhost", "root", "123414", "simpleDb__test");
+        pooledDb.setPoolSize(1, Duration.ofSeconds(5));
+        return pooledDb;
+    }
+
+    // 하나뿐인 커넥션을 seconds 동안 잡아 둔다 (돌려준 스레드가 끝나면 풀에 반납된다)
+    private static Thread holdOnlyConnection(SimpleDb pooledDb, double seconds) throws InterruptedException {
+        long oldQueries = pooledDb.getMetrics().getQueries();
+        Thread holder = Thread.ofVirtual().start(() -> pooledDb.genSql().append("SELECT SLEEP(?)", seconds).selectLong());
+        while (pooledDb.getMetrics().getQueries() == oldQueries) Thread.sleep(1);
+        return holder;
+    }
+
+    // callers개 스레드가 동시에 query를 실행하고 결과를 모은다
+    private static <T> List<T> runConcurrently(int callers, Supplier<T> query) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<T> results = new CopyOnWriteArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(callers)) {
+            for (int i = 0; i < callers; i++) {
+                executor.submit(() -> {
+                    start.await();
+                    results.add(query.get());
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+        return new ArrayList<>(results);
+    }
+}